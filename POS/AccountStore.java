@@ -0,0 +1,669 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// ---------------- ACCOUNT STORE (append-only account log with an on-disk hash index) ----------------
+// accounts.log: int magic, int version, long log id, then one record per change: int body length, body,
+// int crc32 of the body. Body: byte kind, UTF username and, for PUT, UTF password, first, middle, last and
+// the username it replaces ("" unless it is a rename), so a rename is one append like any other edit.
+// accounts.idx: a memory-mapped open-addressing table, username hash -> offset of the name's latest PUT,
+// behind a header naming the log it covers and how far. A login reads a few slots and one record.
+// Processes share the files through accounts.lock (shared to read, exclusive to write). The log is the
+// truth: an index that is missing, torn or for another log is rebuilt from it. The mapped slots are forced
+// before the header's covered mark moves past a record, and a resize marks the index as untrusted first,
+// so after a power loss the header never vouches for slots that did not reach the disk. Once most of the
+// log is dead records, a background compaction copies the live ones into a fresh pair and swaps it in.
+final class AccountStore {
+    private static final int LOG_MAGIC = 0x504F5341;   // "POSA"
+    private static final int INDEX_MAGIC = 0x504F5348; // "POSH"
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER = 16;
+    private static final int INDEX_HEADER = 48;
+    // index header: int magic, int version, then
+    private static final int H_LOG_ID = 8, H_COVERED = 16, H_LIVE = 24, H_CAPACITY = 32, H_USED = 36,
+            H_ENTRIES = 40, H_RETIRED = 44;
+    private static final int SLOT = 16; // long hash (0 = empty), long record offset (-1 = deleted)
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_RECORD = 16 << 10;
+    private static final byte PUT = 1, DELETE = 2;
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+
+    private static AccountStore shared;
+
+    static final class Account {
+        final String username, password, first, middle, last;
+
+        Account(String username, String password, String first, String middle, String last) {
+            this.username = username;
+            this.password = password == null ? "" : password;
+            this.first = first == null ? "" : first;
+            this.middle = middle == null ? "" : middle;
+            this.last = last == null ? "" : last;
+        }
+
+        Account(String username, String password, String[] profile) {
+            this(username, password, profile[0], profile[1], profile[2]);
+        }
+
+        String[] profile() {
+            return new String[]{first, middle, last};
+        }
+    }
+
+    private static final class Record {
+        final byte kind;
+        final Account account;
+        final String replaces;
+
+        Record(byte kind, Account account, String replaces) {
+            this.kind = kind;
+            this.account = account;
+            this.replaces = replaces;
+        }
+    }
+
+    private interface Op<T> { T run() throws IOException; }
+
+    private interface Visitor { void record(long offset, byte[] buf, int at, int length, Record r) throws IOException; }
+
+    private final File logFile;
+    private final File indexFile;
+    private final FileChannel lockChannel;
+    private Segment segment;
+    private final java.util.concurrent.atomic.AtomicBoolean compacting = new java.util.concurrent.atomic.AtomicBoolean();
+
+    // accounts.log in the working directory; the first open imports customers.txt/profiles.txt
+    static synchronized AccountStore shared() {
+        if (shared == null) {
+            try {
+                AccountStore s = new AccountStore(new File("accounts.log"));
+                s.importText(new File("customers.txt"), new File("profiles.txt"));
+                shared = s;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open the account store", e);
+            }
+        }
+        return shared;
+    }
+
+    // <name>.log with <name>.idx and <name>.lock next to it
+    AccountStore(File logFile) throws IOException {
+        List<File> files = files(logFile);
+        this.logFile = logFile;
+        this.indexFile = files.get(1);
+        this.lockChannel = FileChannel.open(files.get(2).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        locked(true, () -> null); // open, check and catch up the index
+    }
+
+    // log, index, lock
+    static List<File> files(File logFile) {
+        File dir = logFile.getAbsoluteFile().getParentFile();
+        String name = logFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return Arrays.asList(logFile, new File(dir, base + ".idx"), new File(dir, base + ".lock"));
+    }
+
+    // where importText leaves a text file once its accounts are in the log
+    static File migrated(File textFile) {
+        return new File(textFile.getPath() + ".migrated");
+    }
+
+    Account get(String username) throws IOException {
+        return locked(false, () -> {
+            long at = segment.offsetOf(username);
+            return at < 0 ? null : segment.read(at).account;
+        });
+    }
+
+    boolean exists(String username) throws IOException {
+        return locked(false, () -> segment.offsetOf(username) >= 0);
+    }
+
+    // false (and nothing written) if the username is taken
+    boolean create(Account a) throws IOException {
+        return locked(true, () -> {
+            if (segment.offsetOf(a.username) >= 0) return false;
+            write(encode(PUT, a, ""));
+            return true;
+        });
+    }
+
+    void put(Account a) throws IOException {
+        locked(true, () -> write(encode(PUT, a, "")));
+    }
+
+    // a.username takes over `from` (same name: a plain update); false if `from` is gone or the name is taken
+    boolean rename(String from, Account a) throws IOException {
+        return locked(true, () -> {
+            if (segment.offsetOf(from) < 0) return false;
+            if (!from.equals(a.username) && segment.offsetOf(a.username) >= 0) return false;
+            write(encode(PUT, a, from));
+            return true;
+        });
+    }
+
+    boolean delete(String username) throws IOException {
+        return locked(true, () -> {
+            if (segment.offsetOf(username) < 0) return false;
+            write(encode(DELETE, new Account(username, "", "", "", ""), ""));
+            return true;
+        });
+    }
+
+    // every live username, in index order (admin tools and the workload replay; logins never need this)
+    List<String> usernames() throws IOException {
+        return locked(false, segment::usernames);
+    }
+
+    // One-time import of the old text files into an empty store; they are kept as *.migrated.
+    void importText(File customersFile, File profilesFile) throws IOException {
+        locked(true, () -> {
+            if (segment.size() > LOG_HEADER || !customersFile.exists()) return null;
+            Map<String, String[]> profiles = new HashMap<>();
+            if (profilesFile.exists()) {
+                try (BufferedReader br = new BufferedReader(new FileReader(profilesFile))) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        String[] p = line.split(":", 4);
+                        if (p.length == 4) profiles.put(p[0], new String[]{p[1], p[2], p[3]});
+                    }
+                }
+            }
+            try (BufferedReader reader = new BufferedReader(new FileReader(customersFile))) {
+                String line;
+                String[] none = {"", "", ""};
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(":");
+                    if (parts.length != 2) continue;
+                    segment.append(encode(PUT, new Account(parts[0], parts[1], profiles.getOrDefault(parts[0], none)), ""));
+                }
+            }
+            segment.force();
+            java.nio.file.Files.move(customersFile.toPath(), migrated(customersFile).toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            if (profilesFile.exists()) {
+                java.nio.file.Files.move(profilesFile.toPath(), migrated(profilesFile).toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+            return null;
+        });
+    }
+
+    // Copies the live records into a fresh log/index pair and swaps it in. Writers only wait for the last
+    // step, which copies whatever was appended while the bulk was being copied.
+    void compact() throws IOException {
+        java.nio.channels.FileLock compactor = lockChannel.tryLock(1, 1, false); // one compaction across processes
+        if (compactor == null) return;
+        File tmpLog = new File(logFile.getPath() + ".compact");
+        File tmpIndex = new File(indexFile.getPath() + ".compact");
+        Segment next = null;
+        try {
+            next = Segment.create(tmpLog, tmpIndex);
+            Segment from = locked(true, () -> segment);
+            long end = from.size();
+            // bulk: records that are still the latest for their name, checked against the index in batches
+            List<long[]> batch = new ArrayList<>();
+            List<byte[]> bytes = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            Segment out = next;
+            Op<Void> flush = () -> {
+                boolean[] live = new boolean[names.size()];
+                locked(false, () -> {
+                    for (int i = 0; i < live.length; i++) live[i] = segment.offsetOf(names.get(i)) == batch.get(i)[0];
+                    return null;
+                });
+                for (int i = 0; i < live.length; i++) if (live[i]) out.append(bytes.get(i));
+                batch.clear();
+                bytes.clear();
+                names.clear();
+                return null;
+            };
+            from.scan(LOG_HEADER, end, (offset, buf, at, length, r) -> {
+                if (r.kind != PUT) return;
+                batch.add(new long[]{offset});
+                bytes.add(Arrays.copyOfRange(buf, at, at + length));
+                names.add(r.account.username);
+                if (names.size() == 1024) flush.run();
+            });
+            flush.run();
+            // tail: everything appended since, in order, then the swap
+            locked(true, () -> {
+                if (segment != from) throw new IOException("account log replaced during compaction");
+                segment.scan(end, segment.size(), (offset, buf, at, length, r) -> out.append(Arrays.copyOfRange(buf, at, at + length)));
+                out.force();
+                segment.retire();
+                // a crash between the moves leaves an index naming another log: it is rebuilt on open
+                java.nio.file.Files.move(tmpIndex.toPath(), indexFile.toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                java.nio.file.Files.move(tmpLog.toPath(), logFile.toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                segment.close();
+                segment = out;
+                return null;
+            });
+            next = null;
+            Metrics.counter("accounts.compactions").increment();
+        } finally {
+            if (next != null) {
+                next.close();
+                tmpLog.delete();
+                tmpIndex.delete();
+            }
+            compactor.release();
+        }
+    }
+
+    private synchronized <T> T locked(boolean write, Op<T> op) throws IOException {
+        java.nio.channels.FileLock lock = lockChannel.lock(0, 1, !write);
+        try {
+            if (!write && (segment == null || !segment.current())) {
+                // another process compacted, grew the index or crashed mid-append: fix that first
+                lock.release();
+                lock = lockChannel.lock(0, 1, false);
+                write = true;
+            }
+            if (write) {
+                if (segment != null && segment.retired()) {
+                    segment.close();
+                    segment = null;
+                }
+                if (segment == null) segment = Segment.open(logFile, indexFile);
+                segment.catchUp();
+            }
+            return op.run();
+        } finally {
+            lock.release();
+        }
+    }
+
+    // exclusive lock held
+    private Void write(byte[] record) throws IOException {
+        segment.append(record);
+        segment.force();
+        long dead = segment.size() - LOG_HEADER - segment.live();
+        if (dead > COMPACT_MIN_BYTES && dead > segment.live() && compacting.compareAndSet(false, true)) {
+            Thread t = new Thread(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    Metrics.failure("AccountStore", e);
+                } finally {
+                    compacting.set(false);
+                }
+            }, "account-compaction");
+            t.setDaemon(true);
+            t.start();
+        }
+        return null;
+    }
+
+    private static byte[] encode(byte kind, Account a, String replaces) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(kind);
+        out.writeUTF(a.username);
+        if (kind == PUT) {
+            out.writeUTF(a.password);
+            out.writeUTF(a.first);
+            out.writeUTF(a.middle);
+            out.writeUTF(a.last);
+            out.writeUTF(replaces);
+        }
+        if (body.size() > MAX_RECORD) throw new IllegalArgumentException("Account record too large");
+        CRC32 crc = new CRC32();
+        crc.update(body.toByteArray());
+        ByteBuffer b = ByteBuffer.allocate(body.size() + 8);
+        b.putInt(body.size()).put(body.toByteArray()).putInt((int) crc.getValue());
+        return b.array();
+    }
+
+    private static Record decode(byte[] buf, int at, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf, at, length));
+        byte kind = in.readByte();
+        String username = in.readUTF();
+        if (kind != PUT) return new Record(kind, new Account(username, "", "", "", ""), "");
+        Account a = new Account(username, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+        return new Record(kind, a, in.readUTF());
+    }
+
+    private static boolean crcMatches(byte[] buf, int at, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, at + 4, length);
+        return (int) crc.getValue() == ByteBuffer.wrap(buf, at + 4 + length, 4).getInt();
+    }
+
+    // 64-bit FNV-1a of the UTF-8 bytes, finalized so the low bits pick slots well; never 0 (empty slot)
+    private static long hash(String username) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static void readAt(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining() && ch.read(b, pos + b.position()) > 0) { }
+    }
+
+    // one log file and the index over it
+    private static final class Segment {
+        private final FileChannel log;
+        private final FileChannel index;
+        private MappedByteBuffer map;
+        private int capacity;
+        private long tail; // end of the records applied to the map; the header's covered mark catches up in force
+
+        private Segment(FileChannel log, FileChannel index) {
+            this.log = log;
+            this.index = index;
+        }
+
+        static Segment open(File logFile, File indexFile) throws IOException {
+            FileChannel log = FileChannel.open(logFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannel index = null;
+            try {
+                ByteBuffer h = ByteBuffer.allocate(LOG_HEADER);
+                long logId;
+                if (log.size() < LOG_HEADER) { // new (or torn before its first record)
+                    logId = java.util.concurrent.ThreadLocalRandom.current().nextLong();
+                    h.putInt(LOG_MAGIC).putInt(VERSION).putLong(logId).flip();
+                    log.truncate(0);
+                    while (h.hasRemaining()) log.write(h, h.position());
+                    log.force(true);
+                } else {
+                    readAt(log, h, 0);
+                    if (h.getInt(0) != LOG_MAGIC || h.getInt(4) != VERSION) throw new IOException(logFile + " is not an account log");
+                    logId = h.getLong(8);
+                }
+                index = FileChannel.open(indexFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Segment s = new Segment(log, index);
+                if (!s.mapIndex(logId)) s.resetIndex(logId, MIN_CAPACITY);
+                return s;
+            } catch (IOException | RuntimeException e) {
+                log.close();
+                if (index != null) index.close();
+                throw e;
+            }
+        }
+
+        static Segment create(File logFile, File indexFile) throws IOException {
+            logFile.delete();
+            indexFile.delete();
+            return open(logFile, indexFile);
+        }
+
+        // map an existing index if it is whole and belongs to this log
+        private boolean mapIndex(long logId) throws IOException {
+            long size = index.size();
+            if (size < INDEX_HEADER) return false;
+            MappedByteBuffer m = index.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int cap = m.getInt(H_CAPACITY);
+            if (m.getInt(0) != INDEX_MAGIC || m.getInt(4) != VERSION || m.getLong(H_LOG_ID) != logId
+                    || m.getInt(H_RETIRED) != 0 || cap < MIN_CAPACITY || Integer.bitCount(cap) != 1
+                    || size < INDEX_HEADER + (long) cap * SLOT) return false;
+            map = m;
+            capacity = cap;
+            tail = m.getLong(H_COVERED);
+            return true;
+        }
+
+        private void resetIndex(long logId, int cap) throws IOException {
+            index.truncate(0);
+            map = null; // no longer backed by the file
+            resize(cap);
+            map.putInt(0, INDEX_MAGIC);
+            map.putInt(4, VERSION);
+            map.putLong(H_LOG_ID, logId);
+            map.putLong(H_COVERED, LOG_HEADER);
+            tail = LOG_HEADER;
+            map.putLong(H_LIVE, 0);
+            map.putInt(H_USED, 0);
+            map.putInt(H_ENTRIES, 0);
+            map.putInt(H_RETIRED, 0);
+        }
+
+        // the file becomes header + cap empty slots (the header is kept, marked untrusted until cover)
+        private void resize(int cap) throws IOException {
+            if (map != null) {
+                map.putLong(H_COVERED, 0);
+                map.force();
+            }
+            index.truncate(INDEX_HEADER);
+            long size = INDEX_HEADER + (long) cap * SLOT;
+            index.write(ByteBuffer.allocate(1), size - 1);
+            map = index.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(H_CAPACITY, cap);
+            capacity = cap;
+        }
+
+        boolean retired() {
+            return map.getInt(H_RETIRED) != 0;
+        }
+
+        void retire() {
+            map.putInt(H_RETIRED, 1);
+        }
+
+        // nothing to fix before reading
+        boolean current() throws IOException {
+            return !retired() && map.getInt(H_CAPACITY) == capacity && map.getLong(H_COVERED) == log.size();
+        }
+
+        // exclusive lock held: follow another process's changes, index records it did not, drop a torn tail
+        void catchUp() throws IOException {
+            if (map.getInt(H_CAPACITY) != capacity) {
+                map = index.map(FileChannel.MapMode.READ_WRITE, 0, index.size());
+                capacity = map.getInt(H_CAPACITY);
+            }
+            long covered = map.getLong(H_COVERED), size = log.size();
+            if (covered > size || covered < LOG_HEADER) { // log replaced, or a resize was cut short
+                resetIndex(map.getLong(H_LOG_ID), MIN_CAPACITY);
+                covered = LOG_HEADER;
+            }
+            tail = covered;
+            if (covered < size) {
+                long end = scan(covered, size, (offset, buf, at, length, r) -> apply(r, offset, length));
+                cover(end);
+                if (end < size) log.truncate(end);
+            }
+        }
+
+        long size() {
+            return tail;
+        }
+
+        long live() {
+            return map.getLong(H_LIVE);
+        }
+
+        void append(byte[] record) throws IOException {
+            long offset = size();
+            ByteBuffer b = ByteBuffer.wrap(record);
+            while (b.hasRemaining()) log.write(b, offset + b.position());
+            apply(decode(record, 4, record.length - 8), offset, record.length);
+            tail = offset + record.length;
+        }
+
+        // the slots for everything before end reach the disk before the header says they cover it;
+        // re-applying a record the header does not cover yet is harmless
+        private void cover(long end) {
+            map.force();
+            map.putLong(H_COVERED, end);
+            tail = end;
+        }
+
+        // log first, then the index over it
+        void force() throws IOException {
+            log.force(false);
+            cover(tail);
+        }
+
+        void close() throws IOException {
+            log.close();
+            index.close();
+        }
+
+        // Calls v for each whole record in [from, to); returns where the valid records end.
+        long scan(long from, long to, Visitor v) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+            long pos = from;
+            while (pos < to) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), to - pos));
+                readAt(log, buf, pos);
+                byte[] a = buf.array();
+                int n = buf.position(), at = 0;
+                while (at + 4 <= n) {
+                    int length = ByteBuffer.wrap(a, at, 4).getInt();
+                    if (length <= 0 || length > MAX_RECORD) return pos + at;
+                    if (at + 8 + length > n) break;
+                    if (!crcMatches(a, at, length)) return pos + at;
+                    v.record(pos + at, a, at, 8 + length, decode(a, at + 4, length));
+                    at += 8 + length;
+                }
+                if (at == 0) return pos; // a record cut short by a crash
+                pos += at;
+            }
+            return pos;
+        }
+
+        Record read(long offset) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(256);
+            readAt(log, b, offset);
+            int length = b.position() >= 4 ? b.getInt(0) : -1;
+            if (length <= 0 || length > MAX_RECORD) throw new IOException("Bad account record at " + offset);
+            if (length + 8 > b.capacity()) {
+                b = ByteBuffer.allocate(length + 8);
+                readAt(log, b, offset);
+            }
+            if (b.position() < length + 8 || !crcMatches(b.array(), 0, length)) {
+                throw new IOException("Bad account record at " + offset);
+            }
+            return decode(b.array(), 4, length);
+        }
+
+        long offsetOf(String username) throws IOException {
+            int slot = probe(username, hash(username));
+            return slot >= 0 ? offsetAt(slot) : -1;
+        }
+
+        List<String> usernames() throws IOException {
+            List<String> out = new ArrayList<>(map.getInt(H_ENTRIES));
+            for (int slot = 0; slot < capacity; slot++) {
+                if (hashAt(slot) != 0 && offsetAt(slot) >= 0) out.add(read(offsetAt(slot)).account.username);
+            }
+            return out;
+        }
+
+        private void apply(Record r, long offset, int length) throws IOException {
+            if (r.kind == DELETE) {
+                remove(r.account.username);
+            } else {
+                if (!r.replaces.isEmpty() && !r.replaces.equals(r.account.username)) remove(r.replaces);
+                put(r.account.username, offset, length);
+            }
+        }
+
+        private void put(String username, long offset, int length) throws IOException {
+            long h = hash(username);
+            int slot = probe(username, h);
+            if (slot >= 0) {
+                map.putLong(H_LIVE, live() - recordLength(offsetAt(slot)) + length);
+                setSlot(slot, h, offset);
+                return;
+            }
+            if ((map.getInt(H_USED) + 1) * 10L > capacity * 6L) {
+                rehash();
+                slot = probe(username, h);
+            }
+            slot = -1 - slot;
+            if (hashAt(slot) == 0) map.putInt(H_USED, map.getInt(H_USED) + 1);
+            map.putInt(H_ENTRIES, map.getInt(H_ENTRIES) + 1);
+            map.putLong(H_LIVE, live() + length);
+            setSlot(slot, h, offset);
+        }
+
+        private void remove(String username) throws IOException {
+            long h = hash(username);
+            int slot = probe(username, h);
+            if (slot < 0) return;
+            map.putLong(H_LIVE, live() - recordLength(offsetAt(slot)));
+            map.putInt(H_ENTRIES, map.getInt(H_ENTRIES) - 1);
+            setSlot(slot, h, -1);
+        }
+
+        // slot of the name's entry, or -1 - the slot a new entry should take
+        private int probe(String username, long h) throws IOException {
+            int mask = capacity - 1;
+            int free = -1;
+            for (int i = 0, slot = (int) h & mask; i < capacity; i++, slot = (slot + 1) & mask) {
+                long sh = hashAt(slot);
+                if (sh == 0) return -1 - (free >= 0 ? free : slot);
+                long offset = offsetAt(slot);
+                if (offset < 0) {
+                    if (free < 0) free = slot;
+                } else if (sh == h && read(offset).account.username.equals(username)) {
+                    return slot;
+                }
+            }
+            return -1 - free; // only tombstones left; the load factor keeps this from happening
+        }
+
+        // rebuild in place at a size that leaves the table at most 30% full; deleted slots are dropped
+        private void rehash() throws IOException {
+            int n = map.getInt(H_ENTRIES);
+            long[] hashes = new long[n], offsets = new long[n];
+            int k = 0;
+            for (int slot = 0; slot < capacity && k < n; slot++) {
+                if (hashAt(slot) != 0 && offsetAt(slot) >= 0) {
+                    hashes[k] = hashAt(slot);
+                    offsets[k++] = offsetAt(slot);
+                }
+            }
+            int cap = MIN_CAPACITY;
+            while ((n + 1) * 10L > cap * 3L) cap *= 2;
+            resize(cap);
+            int mask = cap - 1;
+            for (int i = 0; i < k; i++) {
+                int slot = (int) hashes[i] & mask;
+                while (hashAt(slot) != 0) slot = (slot + 1) & mask;
+                setSlot(slot, hashes[i], offsets[i]);
+            }
+            map.putInt(H_USED, k);
+        }
+
+        private int recordLength(long offset) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(4);
+            readAt(log, b, offset);
+            return b.getInt(0) + 8;
+        }
+
+        private long hashAt(int slot) {
+            return map.getLong(INDEX_HEADER + slot * SLOT);
+        }
+
+        private long offsetAt(int slot) {
+            return map.getLong(INDEX_HEADER + slot * SLOT + 8);
+        }
+
+        private void setSlot(int slot, long h, long offset) {
+            map.putLong(INDEX_HEADER + slot * SLOT + 8, offset);
+            map.putLong(INDEX_HEADER + slot * SLOT, h);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package billgenerator;
+
+import javax.swing.table.DefaultTableModel;
+import java.util.*;
+
+// ---------------- BAG MODEL (a cashier's open order) ----------------
+// Rows are item, unit price in cents (Long), qty (Integer). Adding an item that is already in the bag
+// bumps its quantity instead of adding a row.
+class BagModel extends DefaultTableModel {
+    BagModel() {
+        super(new String[]{"Item", "Price", "Qty"}, 0);
+    }
+
+    void add(String item, long priceCents) {
+        for (int i = 0; i < getRowCount(); i++) {
+            if (getValueAt(i, 0).equals(item)) {
+                int qty = (int) getValueAt(i, 2);
+                setValueAt(qty + 1, i, 2);
+                return;
+            }
+        }
+        addRow(new Object[]{item, priceCents, 1});
+    }
+
+    // the bag as order lines, in row order
+    List<OrderRecord.Line> lines() {
+        List<OrderRecord.Line> lines = new ArrayList<>(getRowCount());
+        for (int i = 0; i < getRowCount(); i++) {
+            lines.add(new OrderRecord.Line((String) getValueAt(i, 0), (int) getValueAt(i, 2), (Long) getValueAt(i, 1)));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,385 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// ---------------- CSV SCANNER (shared streaming reader for the .csv files) ----------------
+// Walks a file through read-only mapped windows and splits each row in place: a field is just a
+// byte range of the mapping (quotes stripped), and numbers, amounts and ISO dates are parsed straight
+// from those bytes. Strings are only built when a caller asks for one, and string(i, Strings) hands
+// back the same String for repeated names (customers, items) without allocating.
+// A row ends at '\n' (a trailing '\r' is dropped); blank rows are skipped; "" inside quotes is a quote.
+final class CsvScanner {
+    interface RowHandler { void row(CsvScanner row) throws IOException; }
+
+    private static final int MAX_FIELDS = 32;
+    private static final long WINDOW = 64L << 20;
+
+    private ByteBuffer buf;
+    private long base;               // file offset of buf[0]
+    private int rowStart, rowNext;   // rowNext = first byte after the row's '\n'
+    private int fields;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private final boolean[] escaped = new boolean[MAX_FIELDS];
+
+    // Calls h for every complete row whose '\n' lies before `to`, starting at `from` (a row boundary).
+    // Returns the offset just past the last complete row, i.e. where the next scan should resume.
+    static long scan(File f, long from, long to, RowHandler h) throws IOException {
+        if (!f.exists() || from >= to) return from;
+        CsvScanner s = new CsvScanner();
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            to = Math.min(to, ch.size());
+            long pos = from;
+            long window = WINDOW;
+            while (pos < to) {
+                long len = Math.min(window, to - pos);
+                s.buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                s.base = pos;
+                int consumed = s.rows(h);
+                if (consumed == 0) {
+                    if (len < window) break; // unterminated tail: leave it for the next scan
+                    window *= 2;             // one row longer than the window
+                    continue;
+                }
+                pos += consumed;
+            }
+            return pos;
+        }
+    }
+
+    // Every row of a whole file.
+    static long scan(File f, RowHandler h) throws IOException {
+        return scan(f, 0, Long.MAX_VALUE, h);
+    }
+
+    // Calls h on the first complete row that starts at or after `pos` and ends before `limit`, and returns
+    // that row's offset, or -1 if there is none. Reads a few KB around pos, not the whole window.
+    static long probe(FileChannel ch, long pos, long limit, RowHandler h) throws IOException {
+        CsvScanner s = new CsvScanner();
+        long at = Math.max(0, pos - 1); // a row starts at pos if the byte before it ends a line
+        // grows up to one scan window; a range with no row in that much text is treated as having none
+        for (long len = 4096; ; len *= 2) {
+            int n = (int) Math.max(0, Math.min(len, limit - at));
+            ByteBuffer b = ByteBuffer.allocate(n);
+            while (b.hasRemaining() && ch.read(b, at + b.position()) > 0) { }
+            int read = b.position();
+            int start = pos == 0 ? 0 : -1;
+            for (int i = 0; i < read; i++) {
+                if (b.get(i) != '\n') continue;
+                if (start < 0) {
+                    start = i + 1;
+                    continue;
+                }
+                s.buf = b;
+                s.base = at;
+                s.rowStart = start;
+                s.rowNext = i + 1;
+                s.splitRow(i > start && b.get(i - 1) == '\r' ? i - 1 : i);
+                h.row(s);
+                return at + start;
+            }
+            if (read < len || len >= WINDOW) return -1; // reached limit, the end of the file or the cap without a whole row
+        }
+    }
+
+    interface PartialFolder<P> { void row(P partial, CsvScanner row); }
+
+    // pos.scan.threads=1 turns the parallel scan into a plain sequential one
+    static final int SCAN_THREADS = Math.max(1, Integer.getInteger("pos.scan.threads", Runtime.getRuntime().availableProcessors()));
+    private static final long MIN_RANGE = 8L << 20;
+    private static java.util.concurrent.ForkJoinPool scanPool;
+
+    // Parallel form of scan(): [from, to) is cut at line boundaries into ranges of at least MIN_RANGE
+    // bytes, each folded into its own partial on a ForkJoin pool. Partials are added to `out` in file
+    // order, so merging them in that order gives the same result as one sequential pass.
+    static <P> long scanParallel(File f, long from, long to, java.util.function.Supplier<P> newPartial,
+                                 PartialFolder<P> folder, List<P> out) throws IOException {
+        if (!f.exists() || from >= to) return from;
+        to = Math.min(to, f.length());
+        long[] cuts = cuts(f, from, to);
+        int n = cuts.length - 1;
+        List<P> partials = new ArrayList<>(Collections.<P>nCopies(n, null));
+        long[] ends = new long[n];
+        if (n == 1) {
+            P p = newPartial.get();
+            ends[0] = scan(f, from, to, r -> folder.row(p, r));
+            partials.set(0, p);
+        } else {
+            List<java.util.concurrent.ForkJoinTask<?>> tasks = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                int part = k;
+                tasks.add(java.util.concurrent.ForkJoinTask.adapt(() -> {
+                    P p = newPartial.get();
+                    ends[part] = scan(f, cuts[part], cuts[part + 1], r -> folder.row(p, r));
+                    partials.set(part, p);
+                    return null;
+                }));
+            }
+            try {
+                pool().submit(() -> java.util.concurrent.ForkJoinTask.invokeAll(tasks)).join();
+            } catch (RuntimeException e) {
+                throw new IOException("parallel scan of " + f + " failed", e);
+            }
+        }
+        out.addAll(partials);
+        return ends[n - 1];
+    }
+
+    // range boundaries: from, then the byte after the first '\n' at or past each even split, then to
+    private static long[] cuts(File f, long from, long to) throws IOException {
+        int parts = (int) Math.max(1, Math.min(SCAN_THREADS * 4L, (to - from) / MIN_RANGE));
+        if (parts == 1 || SCAN_THREADS == 1) return new long[]{from, to};
+        long[] cuts = new long[parts + 1];
+        int n = 0;
+        cuts[n++] = from;
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(4096);
+            for (int k = 1; k < parts; k++) {
+                long pos = Math.max(from + (to - from) * k / parts, cuts[n - 1]);
+                long cut = -1;
+                while (cut < 0 && pos < to) {
+                    b.clear();
+                    int read = ch.read(b, pos);
+                    if (read <= 0) break;
+                    for (int i = 0; i < read; i++) {
+                        if (b.get(i) == '\n') {
+                            cut = pos + i + 1;
+                            break;
+                        }
+                    }
+                    pos += read;
+                }
+                if (cut < 0 || cut >= to) break;
+                if (cut > cuts[n - 1]) cuts[n++] = cut;
+            }
+        }
+        cuts[n++] = to;
+        return Arrays.copyOf(cuts, n);
+    }
+
+    private static synchronized java.util.concurrent.ForkJoinPool pool() {
+        if (scanPool == null) scanPool = new java.util.concurrent.ForkJoinPool(SCAN_THREADS);
+        return scanPool;
+    }
+
+    // Fields of a single already-decoded line (UI paths that hold a String).
+    static String[] split(String line) {
+        CsvScanner s = new CsvScanner();
+        s.buf = ByteBuffer.wrap(line.concat("\n").getBytes(StandardCharsets.UTF_8));
+        s.rowStart = 0;
+        s.splitRow(s.buf.limit() - 1);
+        String[] out = new String[s.fields];
+        for (int i = 0; i < out.length; i++) out[i] = s.string(i);
+        return out;
+    }
+
+    // returns bytes consumed by complete rows in the current window
+    private int rows(RowHandler h) throws IOException {
+        int limit = buf.limit();
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) != '\n') continue;
+            rowStart = start;
+            rowNext = i + 1;
+            int end = i;
+            if (end > start && buf.get(end - 1) == '\r') end--;
+            if (end > start) {
+                splitRow(end);
+                h.row(this);
+            }
+            start = i + 1;
+        }
+        return start;
+    }
+
+    private void splitRow(int end) {
+        fields = 0;
+        boolean inQuotes = false;
+        int fieldStart = rowStart;
+        boolean esc = false;
+        for (int i = rowStart; i <= end; i++) {
+            byte b = i < end ? buf.get(i) : (byte) ',';
+            if (b == '"') {
+                if (inQuotes && i + 1 < end && buf.get(i + 1) == '"') {
+                    esc = true;
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (b == ',' && (!inQuotes || i == end)) {
+                if (fields < MAX_FIELDS) {
+                    int s = fieldStart, e = i;
+                    if (e - s >= 2 && buf.get(s) == '"' && buf.get(e - 1) == '"') {
+                        s++;
+                        e--;
+                    }
+                    starts[fields] = s;
+                    ends[fields] = e;
+                    escaped[fields] = esc;
+                    fields++;
+                }
+                fieldStart = i + 1;
+                esc = false;
+            }
+        }
+    }
+
+    int fieldCount() {
+        return fields;
+    }
+
+    // file offset of the row and its length including the line terminator
+    long rowOffset() {
+        return base + rowStart;
+    }
+
+    int rowLength() {
+        return rowNext - rowStart;
+    }
+
+    int length(int i) {
+        return ends[i] - starts[i];
+    }
+
+    String string(int i) {
+        int s = starts[i], n = ends[i] - s;
+        byte[] b = new byte[n];
+        buf.get(s, b, 0, n);
+        String v = new String(b, StandardCharsets.UTF_8);
+        return escaped[i] ? v.replace("\"\"", "\"") : v;
+    }
+
+    // dense id of the field's text in `names`; repeated values cost a hash lookup, no allocation
+    int id(int i, NameDictionary names) {
+        return escaped[i] ? names.id(string(i)) : names.id(buf, starts[i], ends[i]);
+    }
+
+    // same as string(i), but repeated values come back as one shared instance
+    String string(int i, NameDictionary names) {
+        return names.name(id(i, names));
+    }
+
+    boolean equalsAscii(int i, String value) {
+        int s = starts[i], n = ends[i] - s;
+        if (n != value.length()) return false;
+        for (int k = 0; k < n; k++) {
+            if (buf.get(s + k) != value.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    long parseLong(int i, long def) {
+        int s = skipSpaces(starts[i], ends[i]), e = trimSpaces(s, ends[i]);
+        boolean neg = s < e && buf.get(s) == '-';
+        if (neg) s++;
+        if (s == e || e - s > 18) return def;
+        long v = 0;
+        for (int k = s; k < e; k++) {
+            int d = buf.get(k) - '0';
+            if (d < 0 || d > 9) return def;
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    int parseInt(int i, int def) {
+        long v = parseLong(i, Long.MIN_VALUE);
+        return v == Long.MIN_VALUE || v != (int) v ? def : (int) v;
+    }
+
+    // decimal amount -> cents, rounded half up like Math.round(x * 100); `def` if it is not a number
+    long parseCents(int i, long def) {
+        int s = skipSpaces(starts[i], ends[i]), e = trimSpaces(s, ends[i]);
+        if (s < e && buf.get(s) == '-') return slowCents(i, def); // never written by the app
+        long whole = 0;
+        int k = s, digits = 0;
+        for (; k < e && buf.get(k) != '.'; k++, digits++) {
+            int d = buf.get(k) - '0';
+            if (d < 0 || d > 9 || digits > 15) return slowCents(i, def);
+            whole = whole * 10 + d;
+        }
+        long frac = 0;
+        int fracDigits = 0;
+        boolean roundUp = false;
+        if (k < e) {
+            for (k++; k < e; k++, fracDigits++) {
+                int d = buf.get(k) - '0';
+                if (d < 0 || d > 9) return slowCents(i, def);
+                if (fracDigits < 2) frac = frac * 10 + d;
+                else if (fracDigits == 2) roundUp = d >= 5;
+            }
+        }
+        if (digits == 0 && fracDigits == 0) return def;
+        if (fracDigits == 1) frac *= 10;
+        return whole * 100 + frac + (roundUp ? 1 : 0);
+    }
+
+    private long slowCents(int i, long def) {
+        // exponents and the like: rare, so the allocating path is fine
+        try {
+            return Math.round(Double.parseDouble(string(i).trim()) * 100.0);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    // ISO yyyy-MM-dd[...] -> epoch day, or Long.MIN_VALUE if the field does not start with a date
+    long epochDay(int i) {
+        int s = starts[i];
+        if (ends[i] - s < 10 || buf.get(s + 4) != '-' || buf.get(s + 7) != '-') return Long.MIN_VALUE;
+        int y = digits(s, 4), m = digits(s + 5, 2), d = digits(s + 8, 2);
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > 31) return Long.MIN_VALUE;
+        return epochDay(y, m, d);
+    }
+
+    // ISO yyyy-MM-ddTHH:mm[:ss[.fraction]] read as UTC -> epoch second, or Long.MIN_VALUE
+    long epochSecond(int i) {
+        long day = epochDay(i);
+        int s = starts[i], n = ends[i] - s;
+        if (day == Long.MIN_VALUE || n < 16 || buf.get(s + 10) != 'T' || buf.get(s + 13) != ':') return Long.MIN_VALUE;
+        int hh = digits(s + 11, 2), mm = digits(s + 14, 2), ss = 0;
+        if (n >= 19 && buf.get(s + 16) == ':') ss = digits(s + 17, 2);
+        if (hh < 0 || hh > 23 || mm < 0 || mm > 59 || ss < 0 || ss > 59) return Long.MIN_VALUE;
+        return day * 86400 + hh * 3600 + mm * 60 + ss;
+    }
+
+    // same arithmetic as LocalDate.toEpochDay
+    static long epochDay(int year, int month, int day) {
+        long y = year, total = 365 * y;
+        if (y >= 0) total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        else total -= y / -4 - y / -100 + y / -400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            boolean leap = (y & 3) == 0 && (y % 100 != 0 || y % 400 == 0);
+            if (!leap) total--;
+        }
+        return total - 719528; // days from 0000-01-01 to 1970-01-01
+    }
+
+    private int digits(int at, int n) {
+        int v = 0;
+        for (int k = 0; k < n; k++) {
+            int d = buf.get(at + k) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private int skipSpaces(int s, int e) {
+        while (s < e && buf.get(s) == ' ') s++;
+        return s;
+    }
+
+    private int trimSpaces(int s, int e) {
+        while (e > s && buf.get(e - 1) == ' ') e--;
+        return e;
+    }
+}
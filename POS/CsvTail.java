@@ -0,0 +1,100 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// ---------------- CSV TAIL (incremental reader over an append-only text file) ----------------
+// Remembers the byte offset it has consumed up to and hands out only complete lines appended since.
+// A file that shrank, was replaced (different file key) or whose first bytes changed is treated as
+// truncated/rotated: the caller is told to drop its aggregate and the tail restarts from offset 0.
+class CsvTail {
+    private static final int FINGERPRINT = 64;
+
+    private final File file;
+    private long offset = 0;
+    private Object fileKey = null;
+    private byte[] head = new byte[0];
+
+    CsvTail(File file) {
+        this.file = file;
+    }
+
+    long offset() {
+        return offset;
+    }
+
+    byte[] fingerprint() {
+        return head.clone();
+    }
+
+    // resume from a persisted position; the fingerprint check on the next poll catches a replaced file
+    synchronized void restore(long offset, byte[] fingerprint) {
+        this.offset = offset;
+        this.head = fingerprint.clone();
+        this.fileKey = null;
+    }
+
+    interface RangeReader { long read(long from, long to) throws IOException; } // returns where reading stopped
+
+    // Returns true if the file had to be re-read from the start (onReset ran before any row).
+    boolean poll(Runnable onReset, CsvScanner.RowHandler onRow) {
+        return poll(onReset, (from, to) -> CsvScanner.scan(file, from, to, onRow));
+    }
+
+    // Same, but the caller reads the new bytes [offset, size) itself (e.g. in parallel).
+    synchronized boolean poll(Runnable onReset, RangeReader reader) {
+        if (!file.exists()) {
+            boolean had = offset > 0;
+            if (had) {
+                reset();
+                onReset.run();
+            }
+            return had;
+        }
+        try {
+            long size;
+            boolean rebuilt = false;
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                size = ch.size();
+                if (offset > 0 && (size < offset || rotated(ch))) {
+                    reset();
+                    onReset.run();
+                    rebuilt = true;
+                }
+                if (size == offset) return rebuilt;
+                if (head.length < FINGERPRINT) head = readHead(ch, size);
+            }
+            // an unterminated last row stays unread until its newline arrives
+            offset = reader.read(offset, size);
+            return rebuilt;
+        } catch (IOException e) {
+            Metrics.failure("CsvTail", e);
+            return false;
+        }
+    }
+
+    private void reset() {
+        offset = 0;
+        fileKey = null;
+        head = new byte[0];
+    }
+
+    private boolean rotated(FileChannel ch) throws IOException {
+        Object key = java.nio.file.Files.readAttributes(file.toPath(), java.nio.file.attribute.BasicFileAttributes.class).fileKey();
+        if (fileKey != null && key != null && !fileKey.equals(key)) return true;
+        byte[] now = readHead(ch, Math.min(ch.size(), head.length));
+        return !Arrays.equals(now, head);
+    }
+
+    private byte[] readHead(FileChannel ch, long size) throws IOException {
+        if (fileKey == null) {
+            fileKey = java.nio.file.Files.readAttributes(file.toPath(), java.nio.file.attribute.BasicFileAttributes.class).fileKey();
+        }
+        ByteBuffer b = ByteBuffer.allocate((int) Math.min(size, FINGERPRINT));
+        while (b.hasRemaining() && ch.read(b, b.position()) > 0) { }
+        return Arrays.copyOf(b.array(), b.position());
+    }
+}
@@ -0,0 +1,240 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// ---------------- CUSTOMER ORDER INDEX (customer -> rows of orders.csv) ----------------
+// customer_orders/ holds one postings file per customer, named by a hash of the name:
+//   short nameLength, name (UTF-8), then 12-byte entries in commit order: long offset, int length
+// _covered stores how many bytes of orders.csv the postings reflect. Loading one customer's history
+// reads only that customer's postings and rows, never other customers' data.
+// Only the journal owner writes postings (OrderFilesProjection: catchUp, add, markCovered). page() may run
+// in any process: it re-reads _covered every time, ignores postings past it and finds newer rows by
+// scanning the uncovered tail of orders.csv, without writing anything.
+class CustomerOrderIndex {
+    private static final int ENTRY = 12;
+    private static final int MAX_OPEN = 64;
+    private static final Map<String, CustomerOrderIndex> open = new HashMap<>();
+
+    static final class Page {
+        final List<String> rows;   // csv rows of orders.csv, oldest first
+        final int totalOrders;
+
+        Page(List<String> rows, int totalOrders) {
+            this.rows = rows;
+            this.totalOrders = totalOrders;
+        }
+    }
+
+    private final File ordersFile;
+    private final File dir;
+    private final File coveredFile;
+    private long covered = -1; // the owner's own count
+
+    // postings channels kept open for the customers seen most recently
+    private final LinkedHashMap<String, FileChannel> channels = new LinkedHashMap<String, FileChannel>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, FileChannel> eldest) {
+            if (size() <= MAX_OPEN) return false;
+            try {
+                eldest.getValue().close();
+            } catch (IOException ignored) {}
+            return true;
+        }
+    };
+
+    static synchronized CustomerOrderIndex of(File ordersFile) {
+        return open.computeIfAbsent(ordersFile.getAbsolutePath(), k -> new CustomerOrderIndex(ordersFile, dirFor(ordersFile)));
+    }
+
+    static File dirFor(File ordersFile) {
+        return new File(ordersFile.getAbsoluteFile().getParentFile(), "customer_orders");
+    }
+
+    CustomerOrderIndex(File ordersFile, File dir) {
+        this.ordersFile = ordersFile;
+        this.dir = dir;
+        this.coveredFile = new File(dir, "_covered");
+    }
+
+    // Owner only: index whatever orders.csv gained since the postings were last written (or rebuild if it
+    // shrank). After a crash between add() and markCovered() the postings may already hold some of it.
+    synchronized void catchUp() {
+        try {
+            long size = ordersFile.exists() ? ordersFile.length() : 0;
+            long from = covered();
+            if (from > size) {
+                clear();
+                from = 0;
+            }
+            if (from < size) scanFrom(from, size);
+        } catch (IOException e) {
+            Metrics.failure("CustomerOrderIndex", e);
+        }
+    }
+
+    synchronized void rebuild() {
+        try {
+            clear();
+            catchUp();
+        } catch (IOException e) {
+            Metrics.failure("CustomerOrderIndex", e);
+        }
+    }
+
+    synchronized void add(String customer, long offset, int length) throws IOException {
+        FileChannel ch = channel(customer, true);
+        ByteBuffer e = ByteBuffer.allocate(ENTRY).putLong(offset).putInt(length);
+        e.flip();
+        ch.write(e, ch.size());
+    }
+
+    synchronized void markCovered(long bytes) throws IOException {
+        covered = bytes;
+        dir.mkdirs();
+        try (RandomAccessFile raf = new RandomAccessFile(coveredFile, "rw")) {
+            raf.writeLong(bytes);
+        }
+    }
+
+    // page 0 is the most recent pageSize orders; rows within a page are in time order
+    synchronized Page page(String customer, int page, int pageSize) {
+        List<String> rows = new ArrayList<>();
+        try {
+            long size = ordersFile.exists() ? ordersFile.length() : 0;
+            long upTo = readCovered();
+            if (upTo > size) upTo = 0; // replaced csv: the owner rebuilds when it next opens
+            FileChannel ch = channel(customer, false);
+            long dataStart = headerSize(customer);
+            int indexed = ch == null ? 0 : (int) ((ch.size() - dataStart) / ENTRY);
+            // postings the owner added for rows it has not flushed yet are left to the tail scan
+            ByteBuffer last = ByteBuffer.allocate(ENTRY);
+            while (indexed > 0) {
+                last.clear();
+                while (last.hasRemaining() && ch.read(last, dataStart + (long) (indexed - 1) * ENTRY + last.position()) > 0) { }
+                if (last.getLong(0) + last.getInt(8) <= upTo) break;
+                indexed--;
+            }
+            List<long[]> tail = new ArrayList<>();
+            CsvScanner.scan(ordersFile, upTo, size, r -> {
+                if (r.fieldCount() >= 3 && r.string(1).equals(customer)) tail.add(new long[]{r.rowOffset(), r.rowLength()});
+            });
+
+            int total = indexed + tail.size();
+            int end = total - page * pageSize;
+            int start = Math.max(0, end - pageSize);
+            if (end <= 0) return new Page(rows, total);
+
+            try (FileChannel orders = FileChannel.open(ordersFile.toPath(), StandardOpenOption.READ)) {
+                if (start < indexed) {
+                    ByteBuffer entries = ByteBuffer.allocate((Math.min(end, indexed) - start) * ENTRY);
+                    while (entries.hasRemaining() && ch.read(entries, dataStart + (long) start * ENTRY + entries.position()) > 0) { }
+                    entries.flip();
+                    while (entries.remaining() >= ENTRY) addRow(rows, orders, entries.getLong(), entries.getInt());
+                }
+                for (int k = Math.max(start, indexed); k < end; k++) {
+                    long[] t = tail.get(k - indexed);
+                    addRow(rows, orders, t[0], (int) t[1]);
+                }
+            }
+            return new Page(rows, total);
+        } catch (IOException e) {
+            Metrics.failure("CustomerOrderIndex", e);
+            return new Page(rows, 0);
+        }
+    }
+
+    private static void addRow(List<String> rows, FileChannel orders, long off, int len) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(len);
+        while (row.hasRemaining() && orders.read(row, off + row.position()) > 0) { }
+        String line = new String(row.array(), 0, row.position(), StandardCharsets.UTF_8).trim();
+        if (!line.isEmpty()) rows.add(line);
+    }
+
+    private long covered() throws IOException {
+        if (covered < 0) covered = readCovered();
+        return covered;
+    }
+
+    private long readCovered() throws IOException {
+        if (!coveredFile.exists() || coveredFile.length() < 8) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(coveredFile, "r")) {
+            return raf.readLong();
+        }
+    }
+
+    private void clear() throws IOException {
+        for (FileChannel ch : channels.values()) ch.close();
+        channels.clear();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        covered = 0;
+    }
+
+    private static long headerSize(String customer) {
+        return 2 + customer.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Finds (or creates) the postings file whose header holds exactly this name; hash collisions
+    // just move on to the next numbered file.
+    private FileChannel channel(String customer, boolean create) throws IOException {
+        FileChannel cached = channels.get(customer);
+        if (cached != null) return cached;
+        byte[] name = customer.getBytes(StandardCharsets.UTF_8);
+        String base = Long.toHexString(hash(name));
+        for (int n = 0; ; n++) {
+            File f = new File(dir, base + (n == 0 ? "" : "-" + n) + ".idx");
+            if (!f.exists()) {
+                if (!create) return null;
+                dir.mkdirs();
+                FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ByteBuffer h = ByteBuffer.allocate(2 + name.length).putShort((short) name.length).put(name);
+                h.flip();
+                ch.write(h, 0);
+                channels.put(customer, ch);
+                return ch;
+            }
+            FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer h = ByteBuffer.allocate(2 + name.length);
+            ch.read(h, 0);
+            h.flip();
+            if (h.remaining() >= 2 && (h.getShort() & 0xFFFF) == name.length && h.remaining() == name.length
+                    && Arrays.equals(Arrays.copyOfRange(h.array(), 2, 2 + name.length), name)) {
+                channels.put(customer, ch);
+                return ch;
+            }
+            ch.close();
+        }
+    }
+
+    private static long hash(byte[] b) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (byte x : b) {
+            h ^= (x & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private void scanFrom(long from, long to) throws IOException {
+        NameDictionary names = new NameDictionary();
+        ByteBuffer last = ByteBuffer.allocate(ENTRY);
+        long end = CsvScanner.scan(ordersFile, from, to, r -> {
+            if (r.fieldCount() < 3) return;
+            String customer = r.string(1, names);
+            // postings are in file order: one at or past this row means it was posted before a crash
+            FileChannel ch = channel(customer, true);
+            long at = ch.size() - ENTRY;
+            if (at >= headerSize(customer)) {
+                last.clear();
+                while (last.hasRemaining() && ch.read(last, at + last.position()) > 0) { }
+                if (last.getLong(0) >= r.rowOffset()) return;
+            }
+            add(customer, r.rowOffset(), r.rowLength());
+        });
+        markCovered(end);
+    }
+}
@@ -0,0 +1,113 @@
+package billgenerator;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- DATA ACCESS (file I/O off the event dispatch thread) ----------------
+// Reads run on a background executor (virtual threads when the running JDK has them, a small daemon
+// pool otherwise) and hand their result back to the EDT. Writes go through a single ordered lane so
+// two saves of the same file can never overtake each other.
+class DataAccess {
+    interface IoTask<T> { T call() throws Exception; }
+    interface IoAction { void run() throws Exception; }
+
+    static final String LOADING = "Loading…";
+
+    private static final ExecutorService reads = newReadExecutor();
+    private static final ExecutorService writes = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "data-write");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        // let queued writes reach the disk before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writes.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            } catch (Exception ignored) {}
+        }, "data-write-drain"));
+    }
+
+    private static ExecutorService newReadExecutor() {
+        try {
+            // JDK 21+: Executors.newVirtualThreadPerTaskExecutor(), looked up so we still build on 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int n = Math.max(2, Runtime.getRuntime().availableProcessors());
+            java.util.concurrent.atomic.AtomicInteger seq = new java.util.concurrent.atomic.AtomicInteger();
+            return Executors.newFixedThreadPool(n, r -> {
+                Thread t = new Thread(r, "data-read-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    static <T> CompletableFuture<T> read(IoTask<T> task, java.util.function.Consumer<T> onDone) {
+        return read(task, onDone, null);
+    }
+
+    // onDone/onError run on the EDT; failures are always printed
+    static <T> CompletableFuture<T> read(IoTask<T> task, java.util.function.Consumer<T> onDone,
+                                         java.util.function.Consumer<Throwable> onError) {
+        return submit(reads, task, onDone, onError);
+    }
+
+    // a write that reports back: runs in order on the write lane, then onDone/onError on the EDT
+    static <T> CompletableFuture<T> write(IoTask<T> task, java.util.function.Consumer<T> onDone,
+                                          java.util.function.Consumer<Throwable> onError) {
+        return submit(writes, task, onDone, onError);
+    }
+
+    private static <T> CompletableFuture<T> submit(ExecutorService lane, IoTask<T> task, java.util.function.Consumer<T> onDone,
+                                                   java.util.function.Consumer<Throwable> onError) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        lane.execute(() -> {
+            try {
+                f.complete(task.call());
+            } catch (Throwable t) {
+                f.completeExceptionally(t);
+            }
+        });
+        f.whenComplete((v, err) -> SwingUtilities.invokeLater(() -> {
+            if (err == null) {
+                if (onDone != null) onDone.accept(v);
+            } else {
+                Metrics.failure("DataAccess", err);
+                if (onError != null) onError.accept(err);
+            }
+        }));
+        return f;
+    }
+
+    static CompletableFuture<Void> write(IoAction action) {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        writes.execute(() -> {
+            try {
+                action.run();
+                f.complete(null);
+            } catch (Throwable t) {
+                Metrics.failure("DataAccess", t);
+                f.completeExceptionally(t);
+            }
+        });
+        return f;
+    }
+
+    // placeholder row shown until the real rows arrive
+    static void showLoading(DefaultTableModel model) {
+        model.setRowCount(0);
+        Object[] row = new Object[model.getColumnCount()];
+        if (row.length > 0) row[0] = LOADING;
+        model.addRow(row);
+    }
+
+    static boolean isLoading(DefaultTableModel model) {
+        return model.getRowCount() == 1 && LOADING.equals(model.getValueAt(0, 0));
+    }
+}
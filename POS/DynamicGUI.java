@@ -5,85 +5,218 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.WeekFields;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 // ---------------- MAIN ----------------
 public class DynamicGUI {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // headless owner of the order files for the terminals on this machine (see OrderIngest)
+        if (args.length > 0 && args[0].equals("--ingest-daemon")) {
+            Metrics.startReporting(new File("metrics.log"));
+            OrderIngest.runDaemon();
+            return;
+        }
+        Metrics.startReporting(new File("metrics.log"));
+        Metrics.startEdtProbe();
         SwingUtilities.invokeLater(() -> new LoginScreen());
     }
 }
 
 // ---------------- NOTIFICATION CENTER (persistence for admin/customer) ----------------
 class NotificationCenter {
-    private static final File adminFile = new File("admin_notifications.txt");
-    private static final File customerFile = new File("customer_notifications.txt");
+    static final String ADMIN = "admin";
+
+    private static final NotificationInbox adminInbox = new NotificationInbox(NotificationInbox.ADMIN_LOG);
+    private static final NotificationInbox customerInbox = new NotificationInbox(NotificationInbox.CUSTOMER_LOG);
+
+    static NotificationInbox adminInbox() {
+        return adminInbox;
+    }
+
+    static NotificationInbox customerInbox() {
+        return customerInbox;
+    }
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // producers only enqueue; one writer thread drains the queue and writes whole batches,
+    // flushing when BATCH messages are waiting, after MAX_DELAY_MS, or at shutdown
+    private static final int CAPACITY = 4096;
+    private static final int BATCH = 256;
+    private static final long MAX_DELAY_MS = 200;
+
+    private static final class Pending {
+        final NotificationInbox inbox;
+        final String recipient;
+        final String line;
+
+        Pending(NotificationInbox inbox, String recipient, String line) {
+            this.inbox = inbox;
+            this.recipient = recipient;
+            this.line = line;
+        }
+    }
+
+    private static final Pending STOP = new Pending(null, null, null);
+    private static final java.util.concurrent.BlockingQueue<Pending> queue = new java.util.concurrent.ArrayBlockingQueue<>(CAPACITY);
+    private static final Thread writer = startWriter();
 
     // add admin-targeted notification
-    public static synchronized void addAdminNotification(String msg) {
-        addToFile(adminFile, format(msg));
+    public static void addAdminNotification(String msg) {
+        enqueue(adminInbox, ADMIN, msg);
     }
 
-    // add customer-targeted notification
-    public static synchronized void addCustomerNotification(String msg) {
-        addToFile(customerFile, format(msg));
+    // add notification for every customer (broadcast)
+    public static void addCustomerNotification(String msg) {
+        enqueue(customerInbox, null, msg);
     }
 
-    public static synchronized List<String> getAdminNotifications() {
-        return readFile(adminFile);
+    // add notification only the given customer sees
+    public static void addCustomerNotification(String customer, String msg) {
+        enqueue(customerInbox, customer, msg);
     }
 
-    public static synchronized List<String> getCustomerNotifications() {
-        return readFile(customerFile);
+    private static void enqueue(NotificationInbox inbox, String recipient, String msg) {
+        String line = "[" + LocalDateTime.now().format(STAMP) + "] " + msg;
+        // never block the caller on disk: if the writer is this far behind, drop it and count the drop
+        if (!queue.offer(new Pending(inbox, recipient, line))) {
+            Metrics.counter("notifications.dropped").increment();
+            return;
+        }
+        Metrics.counter("notifications.queued").increment();
     }
 
-    private static String format(String msg) {
-        return "[" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "] " + msg;
+    private static Thread startWriter() {
+        Thread t = new Thread(NotificationCenter::drain, "notification-writer");
+        t.setDaemon(true);
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                queue.put(STOP);
+                writer.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        return t;
     }
 
-    private static void addToFile(File f, String line) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(f, true))) {
-            bw.write(line);
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void drain() {
+        List<Pending> batch = new ArrayList<>(BATCH);
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+                // linger briefly so a burst of edits lands in one write
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MS);
+                while (batch.size() < BATCH && !batch.contains(STOP)) {
+                    Pending p = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    batch.add(p);
+                }
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+            if (batch.remove(STOP)) {
+                stop = true;
+                queue.drainTo(batch);
+            }
+            write(batch);
+            batch.clear();
         }
+        adminInbox.close();
+        customerInbox.close();
     }
 
-    private static List<String> readFile(File f) {
-        List<String> out = new ArrayList<>();
-        if (!f.exists()) return out;
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
-            while ((line = br.readLine()) != null) out.add(line);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void write(List<Pending> batch) {
+        long start = System.nanoTime();
+        for (NotificationInbox inbox : new NotificationInbox[]{adminInbox, customerInbox}) {
+            List<String> recipients = new ArrayList<>();
+            List<String> lines = new ArrayList<>();
+            for (Pending p : batch) {
+                if (p.inbox != inbox) continue;
+                recipients.add(p.recipient);
+                lines.add(p.line);
+            }
+            if (lines.isEmpty()) continue;
+            try {
+                inbox.appendAll(recipients, lines);
+            } catch (IOException e) {
+                Metrics.failure("NotificationCenter", e);
+            }
         }
-        return out;
+        if (!batch.isEmpty()) Metrics.NOTIFICATION_WRITE.recordSince(start);
     }
 }
 
-// small reusable dialog to show list of strings
+// small reusable dialog showing one recipient's notifications, newest first, a page at a time
 class NotificationsDialog extends JDialog {
-    public NotificationsDialog(JFrame parent, String title, List<String> messages) {
+    private static final int PAGE = 50;
+
+    private final NotificationInbox inbox;
+    private final String recipient;
+    private final DefaultListModel<String> model = new DefaultListModel<>();
+    private final JButton olderBtn = new JButton("Load older");
+    private long oldestSeq = Long.MAX_VALUE;
+
+    public NotificationsDialog(JFrame parent, String title, NotificationInbox inbox, String recipient, Runnable onClose) {
         super(parent, title, true);
+        this.inbox = inbox;
+        this.recipient = recipient;
         setSize(480, 360);
         setLocationRelativeTo(parent);
-        DefaultListModel<String> model = new DefaultListModel<>();
-        for (String m : messages) model.addElement(m);
         JList<String> list = new JList<>(model);
         JScrollPane sp = new JScrollPane(list);
         add(sp, BorderLayout.CENTER);
         JButton close = new JButton("Close");
         close.addActionListener(e -> dispose());
-        add(close, BorderLayout.SOUTH);
+        olderBtn.addActionListener(e -> loadPage(true));
+        JPanel buttons = new JPanel();
+        buttons.add(olderBtn);
+        buttons.add(close);
+        add(buttons, BorderLayout.SOUTH);
+        addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) {
+                if (onClose != null) onClose.run();
+            }
+        });
+        loadPage(false);
         setVisible(true);
     }
+
+    private void loadPage(boolean older) {
+        olderBtn.setEnabled(false);
+        long before = oldestSeq;
+        model.addElement(DataAccess.LOADING);
+        DataAccess.read(() -> {
+            NotificationInbox.Page page = inbox.page(recipient, before, PAGE);
+            // opening the newest page marks everything up to it as read
+            if (!older && !page.entries.isEmpty()) inbox.markRead(recipient, page.entries.get(0).seq);
+            return page;
+        }, page -> {
+            model.removeElement(DataAccess.LOADING);
+            for (NotificationInbox.Entry e : page.entries) {
+                model.addElement(e.text);
+                oldestSeq = Math.min(oldestSeq, e.seq);
+            }
+            if (!older && page.entries.isEmpty()) model.addElement("No notifications.");
+            olderBtn.setEnabled(page.hasMore);
+        });
+    }
+
+    // show the recipient's unread count on a notification button
+    static void updateBell(JButton bell, NotificationInbox inbox, String recipient) {
+        DataAccess.read(() -> inbox.unreadCount(recipient), n ->
+                bell.setText(n > 0 ? "🔔 Notifications (" + n + ")" : "🔔 Notifications"));
+    }
 }
 
 // ---------------- LOGIN SCREEN ----------------
@@ -95,22 +228,12 @@ class LoginScreen extends JFrame {
     JComboBox<String> roleBox;
     JCheckBox showPasswordBox;
 
-    static Map<String, String> customers = new HashMap<>();
-    static File customerFile = new File("customers.txt");
-
-    // profiles: username -> [first, middle, last]
-    static Map<String, String[]> profiles = new HashMap<>();
-    static File profilesFile = new File("profiles.txt");
-
     public LoginScreen() {
         setTitle("Dynamic POS Login");
         setSize(400, 300);
         setLocationRelativeTo(null);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        loadCustomers(); // keep your original behavior
-        loadProfiles();  // load name parts if any
-
         JPanel panel = new JPanel(new GridLayout(6, 2, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
 
@@ -154,68 +277,24 @@ class LoginScreen extends JFrame {
 
         add(panel);
         setVisible(true);
-    }
 
-    // Load saved customer accounts from file
-    private void loadCustomers() {
-        customers.clear();
-        if (customerFile.exists()) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(customerFile))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String[] parts = line.split(":");
-                    if (parts.length == 2) {
-                        customers.put(parts[0], parts[1]);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        // the store is opened (and on the first run imported) in the background; login/register wait for it
+        loginButton.setEnabled(false);
+        registerButton.setEnabled(false);
+        statusLabel.setText("Loading accounts…");
+        DataAccess.read(() -> {
+            AccountStore.shared();
+            return Boolean.TRUE;
+        }, loaded -> {
+            loginButton.setEnabled(true);
+            registerButton.setEnabled(true);
+            statusLabel.setText("");
+        }, err -> statusLabel.setText("Cannot open the account store"));
     }
 
-    // Load profiles: username:first:middle:last
-    private void loadProfiles() {
-        profiles.clear();
-        if (profilesFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(profilesFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] p = line.split(":", 4);
-                    if (p.length == 4) {
-                        profiles.put(p[0], new String[]{p[1], p[2], p[3]});
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    // Save new customer to file
-    public static void saveCustomer(String username, String password) {
-        customers.put(username, password);
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(customerFile, true))) {
-            writer.write(username + ":" + password);
-            writer.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    // Save profile (create or update single profile entry)
-    public static void saveProfile(String username, String first, String middle, String last) {
-        profiles.put(username, new String[]{first == null ? "" : first, middle == null ? "" : middle, last == null ? "" : last});
-        // rewrite profiles file
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(profilesFile))) {
-            for (Map.Entry<String, String[]> e : profiles.entrySet()) {
-                String[] v = e.getValue();
-                bw.write(e.getKey() + ":" + v[0] + ":" + v[1] + ":" + v[2]);
-                bw.newLine();
-            }
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
+    // New account with its profile as one append; false (and nothing written) if the username is taken
+    static boolean saveCustomer(String username, String password, String first, String middle, String last) throws IOException {
+        return AccountStore.shared().create(new AccountStore.Account(username, password, first, middle, last));
     }
 
     // Login authentication
@@ -233,13 +312,21 @@ class LoginScreen extends JFrame {
                 statusLabel.setText("Invalid Admin credentials");
             }
         } else { // Customer
-            if (customers.containsKey(username) && customers.get(username).equals(password)) {
-                JOptionPane.showMessageDialog(this, "Welcome " + username + "!");
-                dispose();
-                new CashierPanel(username);
-            } else {
-                statusLabel.setText("Invalid Customer credentials");
-            }
+            // one index lookup and one record read, off the EDT
+            loginButton.setEnabled(false);
+            DataAccess.read(() -> AccountStore.shared().get(username), account -> {
+                loginButton.setEnabled(true);
+                if (account != null && account.password.equals(password)) {
+                    JOptionPane.showMessageDialog(this, "Welcome " + username + "!");
+                    dispose();
+                    new CashierPanel(username);
+                } else {
+                    statusLabel.setText("Invalid Customer credentials");
+                }
+            }, err -> {
+                loginButton.setEnabled(true);
+                statusLabel.setText("Cannot read the account store");
+            });
         }
     }
 }
@@ -322,18 +409,22 @@ class RegisterScreen extends JFrame {
                 JOptionPane.showMessageDialog(this, "Passwords do not match!");
                 return;
             }
-            if (LoginScreen.customers.containsKey(username)) {
-                JOptionPane.showMessageDialog(this, "Username already exists!");
-                return;
-            }
-
-            LoginScreen.saveCustomer(username, password);
-            // Save profile even if empty fields
-            LoginScreen.saveProfile(username, first, middle, last);
-
-            JOptionPane.showMessageDialog(this, "Account created successfully!");
-            dispose();
-            parent.setVisible(true);
+            // check-and-insert in one step: two registrations of the same name cannot both win.
+            // The profile is saved with the account even if its fields are empty.
+            registerButton.setEnabled(false);
+            DataAccess.write(() -> LoginScreen.saveCustomer(username, password, first, middle, last), created -> {
+                registerButton.setEnabled(true);
+                if (!created) {
+                    JOptionPane.showMessageDialog(this, "Username already exists!");
+                    return;
+                }
+                JOptionPane.showMessageDialog(this, "Account created successfully!");
+                dispose();
+                parent.setVisible(true);
+            }, err -> {
+                registerButton.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "Failed to save the account.", "Error", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         backButton.addActionListener(e -> {
@@ -348,14 +439,20 @@ class RegisterScreen extends JFrame {
 // ---------------- ADMIN DASHBOARD ----------------
 class AdminDashboard extends JFrame {
     private JTable menuTable, salesTable, transactionTable;
-    private DefaultTableModel menuModel, salesModel, transactionModel;
-    private File menuFile = new File("menu.txt");
+    private DefaultTableModel menuModel;
+    private FileRows.TableModel salesModel, transactionModel;
     private File salesFile = new File("sales.txt");
     private File transactionsFile = new File("transactions.txt");
 
     // structured plain-text CSV files used by Analytics
-    private final File ordersFile = new File("orders.csv");         // datetime,customer,total
-    private final File orderItemsFile = new File("order_items.csv");// datetime,item,qty,line_total
+    private final File ordersFile = new File("orders.csv");         // datetime,customer,total,order_id
+    private final File orderItemsFile = new File("order_items.csv");// datetime,item,qty,line_total,order_id
+
+    private JButton[] menuEditButtons = new JButton[0];
+
+    // tabs not built yet, keyed by their placeholder
+    private final Map<Component, java.util.function.Supplier<Component>> lazyTabs = new HashMap<>();
+    private final long opening = System.nanoTime();
 
     public AdminDashboard() {
         setTitle("Admin Dashboard");
@@ -368,11 +465,12 @@ class AdminDashboard extends JFrame {
         // MENU MANAGEMENT
         menuModel = new DefaultTableModel(new String[]{"Item", "Price", "Category"}, 0);
         menuTable = new JTable(menuModel);
-        loadMenu();
 
         JButton addBtn = new JButton("Add Item");
         JButton editBtn = new JButton("Edit Item");
         JButton delBtn = new JButton("Delete Item");
+        menuEditButtons = new JButton[]{addBtn, editBtn, delBtn};
+        loadMenu();
         JButton ordersBtn = new JButton("Orders (Mark Received)");
         JButton notifBtn = new JButton("🔔 Notifications");
 
@@ -394,10 +492,10 @@ class AdminDashboard extends JFrame {
         ordersBtn.addActionListener(e -> showOrdersDialog());
 
         // Admin notification viewer
-        notifBtn.addActionListener(e -> {
-            List<String> notifs = NotificationCenter.getAdminNotifications();
-            new NotificationsDialog(this, "Admin Notifications", notifs);
-        });
+        notifBtn.addActionListener(e -> new NotificationsDialog(this, "Admin Notifications",
+                NotificationCenter.adminInbox(), NotificationCenter.ADMIN,
+                () -> NotificationsDialog.updateBell(notifBtn, NotificationCenter.adminInbox(), NotificationCenter.ADMIN)));
+        NotificationsDialog.updateBell(notifBtn, NotificationCenter.adminInbox(), NotificationCenter.ADMIN);
 
         JPanel menuPanel = new JPanel(new BorderLayout());
         menuPanel.add(new JScrollPane(menuTable), BorderLayout.CENTER);
@@ -412,53 +510,84 @@ class AdminDashboard extends JFrame {
 
         tabs.add("Menu Management", menuPanel);
 
+        // the other tabs are built (and start loading) the first time they are selected
         // SALES DASHBOARD (legacy table)
-        salesModel = new DefaultTableModel(new String[]{"Customer", "Total"}, 0);
-        salesTable = new JTable(salesModel);
-        loadSales();
-        tabs.add("Sales Dashboard", new JScrollPane(salesTable));
+        addLazyTab(tabs, "Sales Dashboard", () -> {
+            salesModel = new FileRows.TableModel(new FileRows(salesFile, row -> row.fieldCount() == 2,
+                    line -> line.split(",")), "Customer", "Total");
+            salesTable = new JTable(salesModel);
+            salesModel.reload();
+            return new JScrollPane(salesTable);
+        });
 
         // TRANSACTIONS (legacy receipts)
-        transactionModel = new DefaultTableModel(new String[]{"Receipt"}, 0);
-        transactionTable = new JTable(transactionModel);
-        loadTransactions();
-        tabs.add("Transactions", new JScrollPane(transactionTable));
+        addLazyTab(tabs, "Transactions", () -> {
+            transactionModel = new FileRows.TableModel(new FileRows(transactionsFile, line -> new String[]{line}), "Receipt");
+            transactionTable = new JTable(transactionModel);
+            transactionModel.reload();
+            return new JScrollPane(transactionTable);
+        });
 
         // Analytics (Top Sellers + Sales Graphs)
-        tabs.add("Analytics", new AnalyticsPanel(ordersFile, orderItemsFile));
+        addLazyTab(tabs, "Analytics", () -> new AnalyticsPanel(ordersFile, orderItemsFile));
+
+        // Diagnostics (where checkout, disk, analytics and EDT time goes)
+        addLazyTab(tabs, "Diagnostics", DiagnosticsPanel::new);
+
+        tabs.addChangeListener(e -> buildTab(tabs, tabs.getSelectedIndex()));
+
+        // once the window is up, fold new sales into the rollups so Analytics opens on warm data
+        addWindowListener(new WindowAdapter() {
+            @Override public void windowOpened(WindowEvent e) {
+                Metrics.ADMIN_OPEN.recordSince(opening);
+                DataAccess.read(() -> {
+                    SalesRollupStore.of(ordersFile, orderItemsFile).catchUp();
+                    return Boolean.TRUE;
+                }, ok -> { });
+            }
+        });
 
         add(tabs);
         setVisible(true);
     }
 
+    // a placeholder tab whose real component is made by build on first selection
+    private void addLazyTab(JTabbedPane tabs, String title, java.util.function.Supplier<Component> build) {
+        JLabel placeholder = new JLabel(DataAccess.LOADING, SwingConstants.CENTER);
+        lazyTabs.put(placeholder, build);
+        tabs.add(title, placeholder);
+    }
+
+    private void buildTab(JTabbedPane tabs, int index) {
+        if (index < 0) return;
+        java.util.function.Supplier<Component> build = lazyTabs.remove(tabs.getComponentAt(index));
+        if (build == null) return;
+        long start = System.nanoTime();
+        tabs.setComponentAt(index, build.get());
+        Metrics.TAB_BUILD.recordSince(start);
+    }
+
+    // orders are listed straight from orders.csv (datetime,customer,total); only visible rows are decoded
     private void showOrdersDialog() {
-        // Build list of orders from orders.csv (datetime,customer,total)
-        List<String[]> orders = new ArrayList<>();
-        if (ordersFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(ordersFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] p = parseCsvLine(line);
-                    if (p.length >= 3) {
-                        orders.add(new String[]{p[0], unescape(p[1]), p[2]});
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        FileRows orders = new FileRows(ordersFile, row -> row.fieldCount() >= 3, line -> {
+            String[] p = CsvScanner.split(line);
+            return p.length >= 3 ? new String[]{p[0], p[1], p[2]} : null;
+        });
+        FileRows.ListModel model = new FileRows.ListModel(orders, (i, o) -> i + ": " + o[0] + " | " + o[1] + " | ₱" + o[2]);
+        DataAccess.read(orders::scan, index -> {
+            orders.publish(index);
+            if (orders.size() == 0) {
+                JOptionPane.showMessageDialog(this, "No orders found.");
+                return;
             }
-        }
-
-        if (orders.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No orders found.");
-            return;
-        }
+            showOrdersDialog(orders, model);
+        });
+    }
 
-        DefaultListModel<String> model = new DefaultListModel<>();
-        for (int i = 0; i < orders.size(); i++) {
-            String[] o = orders.get(i);
-            model.addElement(i + ": " + o[0] + " | " + o[1] + " | ₱" + o[2]);
-        }
+    private void showOrdersDialog(FileRows orders, FileRows.ListModel model) {
         JList<String> list = new JList<>(model);
+        // fixed cell size: JList must not measure every row of a virtual model
+        list.setPrototypeCellValue("000000: 2000-01-01 00:00:00 | XXXXXXXXXXXXXXXXXXXXXXXX | ₱000000.00");
         list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         JScrollPane sp = new JScrollPane(list);
 
@@ -469,17 +598,18 @@ class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this, "Select an order first.");
                 return;
             }
-            String[] o = orders.get(sel);
-            String datetime = o[0];
-            String customer = o[1];
-            String total = o[2];
-
-            // Notify customer that admin got/received their order
-            NotificationCenter.addCustomerNotification("Admin received order for " + customer + " (₱" + total + ") at " + datetime);
-            // Also add admin log
-            NotificationCenter.addAdminNotification("Marked order as received for " + customer + " (₱" + total + ") at " + datetime);
-
-            JOptionPane.showMessageDialog(this, "Customer notified that their order was received.");
+            DataAccess.read(() -> orders.load(sel), o -> {
+                String datetime = o[0];
+                String customer = o[1];
+                String total = o[2];
+
+                // Notify customer that admin got/received their order
+                NotificationCenter.addCustomerNotification(customer, "Admin received order for " + customer + " (₱" + total + ") at " + datetime);
+                // Also add admin log
+                NotificationCenter.addAdminNotification("Marked order as received for " + customer + " (₱" + total + ") at " + datetime);
+
+                JOptionPane.showMessageDialog(this, "Customer notified that their order was received.");
+            });
         });
 
         JPanel pnl = new JPanel(new BorderLayout());
@@ -494,31 +624,23 @@ class AdminDashboard extends JFrame {
     }
 
     private void loadMenu() {
-        menuModel.setRowCount(0);
-        if (menuFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(menuFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length == 3) {
-                        menuModel.addRow(parts);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        for (JButton b : menuEditButtons) b.setEnabled(false);
+        DataAccess.showLoading(menuModel);
+        DataAccess.read(() -> MenuCatalog.shared().current(), menu -> {
+            menuModel.setRowCount(0);
+            for (MenuCatalog.Item it : menu.items) menuModel.addRow(new String[]{it.name, it.priceText, it.category});
+            for (JButton b : menuEditButtons) b.setEnabled(true);
+        });
     }
 
     private void saveMenu() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(menuFile))) {
-            for (int i = 0; i < menuModel.getRowCount(); i++) {
-                bw.write(menuModel.getValueAt(i, 0) + "," + menuModel.getValueAt(i, 1) + "," + menuModel.getValueAt(i, 2));
-                bw.newLine();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        // snapshot on the EDT; the catalog swaps in the new items at once and writes menu.txt in the background
+        List<MenuCatalog.Item> items = new ArrayList<>();
+        for (int i = 0; i < menuModel.getRowCount(); i++) {
+            items.add(new MenuCatalog.Item(String.valueOf(menuModel.getValueAt(i, 0)),
+                    String.valueOf(menuModel.getValueAt(i, 1)), String.valueOf(menuModel.getValueAt(i, 2))));
         }
+        MenuCatalog.shared().save(items);
     }
 
     private void addMenuItem() {
@@ -561,83 +683,23 @@ class AdminDashboard extends JFrame {
             NotificationCenter.addCustomerNotification("Admin deleted item: " + item);
         }
     }
-
-    private void loadSales() {
-        salesModel.setRowCount(0);
-        if (salesFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(salesFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length == 2) {
-                        salesModel.addRow(parts);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    private void loadTransactions() {
-        transactionModel.setRowCount(0);
-        if (transactionsFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(transactionsFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    transactionModel.addRow(new String[]{line});
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    // --- reuse CSV helpers from AnalyticsPanel below ---
-    private String[] parseCsvLine(String line) {
-        List<String> out = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '\"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '\"') {
-                    sb.append('\"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                out.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
-            }
-        }
-        out.add(sb.toString());
-        return out.toArray(new String[0]);
-    }
-
-    private String unescape(String s) {
-        if (s.startsWith("\"") && s.endsWith("\"")) {
-            String inner = s.substring(1, s.length() - 1);
-            return inner.replace("\"\"", "\"");
-        }
-        return s;
-    }
 }
 
 // ---------------- CASHIER PANEL ----------------
 class CashierPanel extends JFrame {
     private String customerName;
-    private DefaultTableModel bagModel;
-    private File menuFile = new File("menu.txt");
-    private File salesFile = new File("sales.txt");
+    private BagModel bagModel;
     private File transactionsFile = new File("transactions.txt");
 
-    // structured plain-text files for analytics
-    private final File ordersFile = new File("orders.csv");          // datetime,customer,total
-    private final File orderItemsFile = new File("order_items.csv"); // datetime,item,qty,line_total
+    // per category tab: the table model and the catalog items behind its rows (same order)
+    private final Map<String, DefaultTableModel> categoryModels = new LinkedHashMap<>();
+    private final Map<String, List<MenuCatalog.Item>> categoryItems = new HashMap<>();
+    private final java.util.function.Consumer<MenuCatalog.Diff> menuListener = this::applyMenuDiff;
+    private boolean menuLoaded = false;
+
+    // structured plain-text files for analytics (written by OrderJournal's projection)
+    private final File ordersFile = new File("orders.csv");          // datetime,customer,total,order_id
+    private final File orderItemsFile = new File("order_items.csv"); // datetime,item,qty,line_total,order_id
 
     public CashierPanel(String customerName) {
         this.customerName = customerName;
@@ -656,8 +718,14 @@ class CashierPanel extends JFrame {
         }
 
         // Bag (selected items)
-        bagModel = new DefaultTableModel(new String[]{"Item", "Price", "Qty"}, 0);
+        bagModel = new BagModel();
         JTable bagTable = new JTable(bagModel);
+        // the price column holds the unit price in cents (Long)
+        bagTable.getColumnModel().getColumn(1).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override protected void setValue(Object value) {
+                setText(value instanceof Long ? Money.format((Long) value) : String.valueOf(value));
+            }
+        });
 
         JButton plusBtn = new JButton("+");
         JButton minusBtn = new JButton("-");
@@ -689,11 +757,11 @@ class CashierPanel extends JFrame {
         // Finish order
         finishBtn.addActionListener(e -> finishOrder());
 
-        // Notifications button for customer - shows notifications intended for customers
-        notifBtn.addActionListener(e -> {
-            List<String> notifs = NotificationCenter.getCustomerNotifications();
-            new NotificationsDialog(this, "Customer Notifications", notifs);
-        });
+        // Notifications button for customer - broadcasts plus notifications for this customer
+        notifBtn.addActionListener(e -> new NotificationsDialog(this, "Customer Notifications",
+                NotificationCenter.customerInbox(), this.customerName,
+                () -> NotificationsDialog.updateBell(notifBtn, NotificationCenter.customerInbox(), this.customerName)));
+        NotificationsDialog.updateBell(notifBtn, NotificationCenter.customerInbox(), customerName);
 
         // --- NEW: Settings button for user profile (edit username/password/name) ---
         JButton settingsBtn = new JButton("⚙ Settings");
@@ -714,20 +782,34 @@ class CashierPanel extends JFrame {
 
         add(categoryTabs);
         setVisible(true);
+
+        // one shared, already parsed catalog fills every category tab; later edits arrive as diffs
+        loadCategoryItems();
+        MenuCatalog.shared().addListener(menuListener);
+        MenuWatcher.start(MenuCatalog.shared());
+        addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) {
+                MenuCatalog.shared().removeListener(menuListener);
+            }
+        });
+
+        // open (and if needed recover) the order journal before the first checkout needs it
+        DataAccess.read(OrderService::shared, svc -> { });
     }
 
     private JPanel createCategoryPanel(String category) {
         DefaultTableModel model = new DefaultTableModel(new String[]{"Item", "Price"}, 0);
         JTable table = new JTable(model);
-        loadCategoryItems(model, category);
+        categoryModels.put(category, model);
+        categoryItems.put(category, new ArrayList<>());
 
         JButton addBtn = new JButton("Add to Bag");
         addBtn.addActionListener(e -> {
             int row = table.getSelectedRow();
-            if (row != -1) {
-                String item = (String) model.getValueAt(row, 0);
-                double price = Double.parseDouble((String) model.getValueAt(row, 1));
-                addToBag(item, price);
+            List<MenuCatalog.Item> items = categoryItems.get(category);
+            if (row != -1 && row < items.size()) {
+                MenuCatalog.Item item = items.get(row);
+                if (item.hasPrice()) bagModel.add(item.name, item.priceCents);
             }
         });
 
@@ -738,106 +820,108 @@ class CashierPanel extends JFrame {
         return panel; // always returns a JPanel
     }
 
-    private void loadCategoryItems(DefaultTableModel model, String category) {
-        model.setRowCount(0);
-        if (menuFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(menuFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length == 3 && parts[2].equalsIgnoreCase(category)) {
-                        model.addRow(new String[]{parts[0], parts[1]});
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    private void loadCategoryItems() {
+        for (DefaultTableModel model : categoryModels.values()) DataAccess.showLoading(model);
+        DataAccess.read(() -> MenuCatalog.shared().current(), this::showCategoryItems);
     }
 
-    private void addToBag(String item, double price) {
-        for (int i = 0; i < bagModel.getRowCount(); i++) {
-            if (bagModel.getValueAt(i, 0).equals(item)) {
-                int qty = (int) bagModel.getValueAt(i, 2);
-                bagModel.setValueAt(qty + 1, i, 2);
-                return;
-            }
+    private void showCategoryItems(MenuCatalog.Snapshot menu) {
+        for (Map.Entry<String, DefaultTableModel> e : categoryModels.entrySet()) {
+            List<MenuCatalog.Item> items = menu.byCategory(e.getKey());
+            DefaultTableModel model = e.getValue();
+            model.setRowCount(0);
+            for (MenuCatalog.Item it : items) model.addRow(new String[]{it.name, it.priceText});
+            categoryItems.put(e.getKey(), new ArrayList<>(items));
         }
-        bagModel.addRow(new Object[]{item, price, 1});
+        menuLoaded = true;
     }
 
-    private void finishOrder() {
-        if (bagModel.getRowCount() == 0) {
-            JOptionPane.showMessageDialog(this, "Your bag is empty!");
+    // patch only the affected rows of the open category tables
+    private void applyMenuDiff(MenuCatalog.Diff diff) {
+        if (!menuLoaded) {
+            loadCategoryItems(); // initial load still in flight: just fetch the newest snapshot again
             return;
         }
-
-        double total = 0;
-        StringBuilder receipt = new StringBuilder("Receipt for " + customerName + "\n");
-        for (int i = 0; i < bagModel.getRowCount(); i++) {
-            String item = (String) bagModel.getValueAt(i, 0);
-            double price = Double.parseDouble(bagModel.getValueAt(i, 1).toString());
-            int qty = (int) bagModel.getValueAt(i, 2);
-            double lineTotal = price * qty;
-            total += lineTotal;
-            receipt.append(item).append(" x").append(qty).append(" - ").append(String.format(Locale.US, "%.2f", lineTotal)).append("\n");
+        for (MenuCatalog.Item it : diff.removed) {
+            String cat = tabFor(it.category);
+            if (cat == null) continue;
+            int row = rowOf(cat, it);
+            if (row >= 0) {
+                categoryItems.get(cat).remove(row);
+                categoryModels.get(cat).removeRow(row);
+            }
         }
-        receipt.append("TOTAL: ").append(String.format(Locale.US, "%.2f", total)).append("\n");
-
-        // Legacy files
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(salesFile, true))) {
-            bw.write(customerName + "," + String.format(Locale.US, "%.2f", total));
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        for (MenuCatalog.Item[] ch : diff.changed) {
+            String cat = tabFor(ch[1].category);
+            if (cat == null) continue;
+            int row = rowOf(cat, ch[0]);
+            if (row >= 0) {
+                categoryItems.get(cat).set(row, ch[1]);
+                categoryModels.get(cat).setValueAt(ch[1].priceText, row, 1);
+            }
         }
-
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(transactionsFile, true))) {
-            bw.write(receipt.toString());
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        for (MenuCatalog.Item it : diff.added) {
+            String cat = tabFor(it.category);
+            if (cat == null) continue;
+            categoryItems.get(cat).add(it);
+            categoryModels.get(cat).addRow(new String[]{it.name, it.priceText});
         }
+    }
 
-        // Structured analytics files
-        String now = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-
-        // orders.csv: datetime,customer,total
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(ordersFile, true))) {
-            bw.write(now + "," + escape(customerName) + "," + String.format(Locale.US, "%.2f", total));
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private String tabFor(String category) {
+        for (String c : categoryModels.keySet()) {
+            if (c.equalsIgnoreCase(category)) return c;
         }
+        return null;
+    }
 
-        // order_items.csv: datetime,item,qty,line_total
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(orderItemsFile, true))) {
-            for (int i = 0; i < bagModel.getRowCount(); i++) {
-                String item = (String) bagModel.getValueAt(i, 0);
-                double price = Double.parseDouble(bagModel.getValueAt(i, 1).toString());
-                int qty = (int) bagModel.getValueAt(i, 2);
-                double lineTotal = price * qty;
-                bw.write(now + "," + escape(item) + "," + qty + "," + String.format(Locale.US, "%.2f", lineTotal));
-                bw.newLine();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    private int rowOf(String cat, MenuCatalog.Item it) {
+        List<MenuCatalog.Item> items = categoryItems.get(cat);
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).key().equals(it.key())) return i;
         }
+        return -1;
+    }
 
-        // Notify admin that a customer placed an order (includes name + total)
-        NotificationCenter.addAdminNotification("Customer " + customerName + " placed an order. Total: ₱" + String.format(Locale.US, "%.2f", total));
+    private void finishOrder() {
+        if (bagModel.getRowCount() == 0) {
+            JOptionPane.showMessageDialog(this, "Your bag is empty!");
+            return;
+        }
 
-        JOptionPane.showMessageDialog(this, receipt.toString());
-        bagModel.setRowCount(0); // clear bag
-    }
+        List<OrderRecord.Line> lines = bagModel.lines();
+        String customer = customerName;
 
-    private String escape(String s) {
-        // minimal CSV escape for commas/quotes
-        String v = s.replace("\"", "\"\"");
-        if (v.contains(",") || v.contains("\"")) {
-            return "\"" + v + "\"";
+        // the order service validates and commits; the journal writer assigns the id and writes all order files
+        java.util.concurrent.CompletableFuture<OrderRecord> pending;
+        try {
+            pending = OrderService.shared().checkout(customer, lines);
+        } catch (RuntimeException e) { // the journal cannot open, or no owner could be elected: keep the bag
+            Metrics.failure("CashierPanel", e);
+            JOptionPane.showMessageDialog(this, "Could not save your order, please try again.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
-        return v;
+        bagModel.setRowCount(0); // clear bag, restored below if the commit fails
+        pending.whenComplete((order, err) -> {
+            long committed = System.nanoTime();
+            SwingUtilities.invokeLater(() -> {
+                Metrics.CHECKOUT_EDT.recordSince(committed);
+                if (err != null) {
+                    for (OrderRecord.Line l : lines) bagModel.addRow(new Object[]{l.item, l.unitCents, l.qty});
+                    Throwable cause = err instanceof java.util.concurrent.CompletionException && err.getCause() != null ? err.getCause() : err;
+                    if (cause instanceof IllegalArgumentException) {
+                        JOptionPane.showMessageDialog(this, "Order rejected: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    Metrics.failure("CashierPanel", cause);
+                    JOptionPane.showMessageDialog(this, "Could not save your order, please try again.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // Notify admin that a customer placed an order (includes name + total)
+                NotificationCenter.addAdminNotification("Customer " + customer + " placed an order. Total: ₱" + Money.format(order.totalCents()));
+                JOptionPane.showMessageDialog(this, order.receiptText());
+            });
+        });
     }
 
     // Called by UserSettingsDialog to update UI session after name change
@@ -861,8 +945,34 @@ class AnalyticsPanel extends JPanel {
     private final JComboBox<String> periodBox;
     private final JButton refreshBtn;
 
+    private final DefaultTableModel hourModel = readOnlyModel("Hour", "Orders", "Sales");
+    private final DefaultTableModel basketModel = readOnlyModel("Items per order", "Orders", "Share");
+    private final JLabel totalsLabel = new JLabel(" ");
+
     private final SimpleLineChartPanel chartPanel;
 
+    private static final String[] VIEWS = {"Daily", "Weekly", "Monthly"};
+    private static final String[] RANGES = {"All time", "Last 7 days", "Last 30 days", "Last 90 days", "Custom…"};
+    private static final int[] RANGE_DAYS = {0, 7, 30, 90, 0};
+
+    // reported days as epoch days, both inclusive; changed on the EDT, captured by each refresh
+    private final JComboBox<String> rangeBox = new JComboBox<>(RANGES);
+    private int rangeIndex = 0;
+    private boolean adjustingRange = false;
+    private long fromDay = Long.MIN_VALUE;
+    private long toDay = Long.MAX_VALUE;
+
+    // persisted daily rollups (weekly/monthly views are derived from them); only touched off the EDT
+    private SalesRollupStore rollups() {
+        return SalesRollupStore.of(ordersFile, orderItemsFile);
+    }
+
+    // scans run in the background; only the newest chart request is applied
+    private final JLabel statusLabel = new JLabel(" ");
+    private int pending = 0;
+    private int chartRequest = 0;
+    private int reportRequest = 0;
+
     public AnalyticsPanel(File ordersFile, File orderItemsFile) {
         this.ordersFile = ordersFile;
         this.orderItemsFile = orderItemsFile;
@@ -874,22 +984,34 @@ class AnalyticsPanel extends JPanel {
         topModel = new DefaultTableModel(new String[]{"Item", "Qty Sold"}, 0) {
             @Override public boolean isCellEditable(int r, int c) { return false; }
             @Override public Class<?> getColumnClass(int columnIndex) {
-                return columnIndex == 1 ? Integer.class : String.class;
+                return columnIndex == 1 ? Long.class : String.class;
             }
         };
         topTable = new JTable(topModel);
-        JScrollPane leftScroll = new JScrollPane(topTable);
-        leftScroll.setPreferredSize(new Dimension(350, 0));
-        add(leftScroll, BorderLayout.WEST);
+        JTabbedPane reports = new JTabbedPane();
+        reports.add("Top Sellers", new JScrollPane(topTable));
+        reports.add("By Hour", new JScrollPane(new JTable(hourModel)));
+        reports.add("Basket Sizes", new JScrollPane(new JTable(basketModel)));
+        JPanel left = new JPanel(new BorderLayout(4, 4));
+        left.add(reports, BorderLayout.CENTER);
+        left.add(totalsLabel, BorderLayout.SOUTH);
+        left.setPreferredSize(new Dimension(350, 0));
+        add(left, BorderLayout.WEST);
 
         // Right: Controls + Chart + Summary
         JPanel right = new JPanel(new BorderLayout(8, 8));
         JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
         controls.add(new JLabel("View:"));
-        periodBox = new JComboBox<>(new String[]{"Daily", "Weekly", "Monthly"});
+        periodBox = new JComboBox<>(VIEWS);
         controls.add(periodBox);
+        controls.add(new JLabel("Range:"));
+        controls.add(rangeBox);
         refreshBtn = new JButton("Refresh");
         controls.add(refreshBtn);
+        JButton rebuildBtn = new JButton("Rebuild");
+        rebuildBtn.setToolTipText("Recompute the stored rollups from orders.csv / order_items.csv");
+        controls.add(rebuildBtn);
+        controls.add(statusLabel);
         right.add(controls, BorderLayout.NORTH);
 
         chartPanel = new SimpleLineChartPanel();
@@ -905,110 +1027,235 @@ class AnalyticsPanel extends JPanel {
         add(right, BorderLayout.CENTER);
 
         // Load initial data
-        refreshTopSellers();
-        refreshChartAndSummary();
+        refresh();
 
-        refreshBtn.addActionListener(e -> {
-            refreshTopSellers();
-            refreshChartAndSummary();
-        });
+        refreshBtn.addActionListener(e -> refresh());
         periodBox.addActionListener(e -> refreshChartAndSummary());
+        rangeBox.addActionListener(e -> {
+            if (!adjustingRange && chooseRange()) refresh();
+        });
+        rebuildBtn.addActionListener(e -> {
+            rebuildBtn.setEnabled(false);
+            started();
+            DataAccess.read(() -> {
+                rollups().rebuild();
+                return Boolean.TRUE;
+            }, ok -> {
+                rebuildBtn.setEnabled(true);
+                finished();
+                refresh();
+            }, err -> {
+                rebuildBtn.setEnabled(true);
+                finished();
+            });
+        });
     }
 
-    private void refreshTopSellers() {
-        Map<String, Integer> counts = new HashMap<>();
-        if (orderItemsFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(orderItemsFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    // datetime,item,qty,line_total
-                    String[] p = parseCsvLine(line);
-                    if (p.length >= 4) {
-                        String item = unescape(p[1]);
-                        int qty = parseIntSafe(p[2], 0);
-                        counts.put(item, counts.getOrDefault(item, 0) + qty);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+    // applies the range box's selection; false (and the previous selection restored) if Custom was cancelled
+    private boolean chooseRange() {
+        int index = rangeBox.getSelectedIndex();
+        long from, to;
+        if (RANGE_DAYS[index] > 0) {
+            to = LocalDate.now().toEpochDay();
+            from = to - RANGE_DAYS[index] + 1;
+        } else if (index == 0) {
+            from = Long.MIN_VALUE;
+            to = Long.MAX_VALUE;
+        } else {
+            long[] custom = askCustomRange();
+            if (custom == null) {
+                adjustingRange = true;
+                rangeBox.setSelectedIndex(rangeIndex);
+                adjustingRange = false;
+                return false;
+            }
+            from = custom[0];
+            to = custom[1];
+        }
+        rangeIndex = index;
+        fromDay = from;
+        toDay = to;
+        rangeBox.setToolTipText(index == 0 ? null : LocalDate.ofEpochDay(from) + " – " + LocalDate.ofEpochDay(to));
+        return true;
+    }
+
+    private long[] askCustomRange() {
+        LocalDate today = LocalDate.now();
+        JTextField fromField = new JTextField(fromDay == Long.MIN_VALUE ? today.minusDays(29).toString() : LocalDate.ofEpochDay(fromDay).toString(), 10);
+        JTextField toField = new JTextField(toDay == Long.MAX_VALUE ? today.toString() : LocalDate.ofEpochDay(toDay).toString(), 10);
+        JPanel p = new JPanel(new GridLayout(2, 2, 6, 6));
+        p.add(new JLabel("From (yyyy-MM-dd):"));
+        p.add(fromField);
+        p.add(new JLabel("To (yyyy-MM-dd):"));
+        p.add(toField);
+        while (JOptionPane.showConfirmDialog(this, p, "Custom Range", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+            try {
+                LocalDate from = LocalDate.parse(fromField.getText().trim());
+                LocalDate to = LocalDate.parse(toField.getText().trim());
+                if (!to.isBefore(from)) return new long[]{from.toEpochDay(), to.toEpochDay()};
+                JOptionPane.showMessageDialog(this, "The end date is before the start date.");
+            } catch (java.time.format.DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(this, "Enter dates as yyyy-MM-dd.");
             }
         }
-        List<Map.Entry<String, Integer>> top = counts.entrySet().stream()
-                .sorted((a, b) -> Integer.compare(b.getValue(), a.getValue()))
-                .limit(10)
-                .collect(Collectors.toList());
+        return null;
+    }
+
+    private void started() {
+        pending++;
+        statusLabel.setText("Loading…");
+    }
+
+    private void finished() {
+        if (--pending <= 0) {
+            pending = 0;
+            statusLabel.setText(" ");
+        }
+    }
+
+    // ratios and shares with one decimal (not money, so not Money): 23 -> "2.3"
+    private static StringBuilder appendTenths(StringBuilder sb, long tenths) {
+        if (tenths < 0) {
+            sb.append('-');
+            tenths = -tenths;
+        }
+        return sb.append(tenths / 10).append('.').append((char) ('0' + tenths % 10));
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+        };
+    }
 
+    // every report on the tab, fed by one pass over the range's rollups
+    private void refresh() {
+        String selected = (String) periodBox.getSelectedItem();
+        final String view = (selected == null) ? "Daily" : selected;
+        final int chart = ++chartRequest;
+        final int request = ++reportRequest;
+        final long from = fromDay, to = toDay;
+        SalesRollupStore.TopSellers top = new SalesRollupStore.TopSellers(10);
+        SalesRollupStore.Series series = new SalesRollupStore.Series(view);
+        SalesRollupStore.Totals totals = new SalesRollupStore.Totals();
+        SalesRollupStore.BasketSizes baskets = new SalesRollupStore.BasketSizes();
+        SalesRollupStore.Hourly hourly = new SalesRollupStore.Hourly();
+
+        started();
+        DataAccess.read(() -> {
+            long start = System.nanoTime();
+            // fold in rows appended since the last refresh (rebuilds itself if the files were truncated/rotated)
+            rollups().forRange(from, to).report(from, to, top, series, totals, baskets, hourly);
+            Metrics.REPORT.recordSince(start);
+            return Boolean.TRUE;
+        }, ok -> {
+            finished();
+            if (request == reportRequest) {
+                showTopSellers(top.result);
+                showTotals(totals);
+                showHourly(hourly);
+                showBaskets(baskets);
+            }
+            if (chart == chartRequest) {
+                long start = System.nanoTime();
+                showChartAndSummary(view, series.result);
+                Metrics.CHART_SHOW.recordSince(start);
+            }
+        }, err -> finished());
+    }
+
+    private void showTopSellers(List<Map.Entry<String, Long>> top) {
         topModel.setRowCount(0);
-        for (Map.Entry<String, Integer> e : top) {
+        for (Map.Entry<String, Long> e : top) {
             topModel.addRow(new Object[]{e.getKey(), e.getValue()});
         }
     }
 
+    private void showTotals(SalesRollupStore.Totals t) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(t.orders).append(" orders · ₱");
+        Money.appendGrouped(sb, t.cents);
+        if (t.orders > 0) {
+            sb.append(" · avg ₱");
+            Money.appendGrouped(sb, Math.round((double) t.cents / t.orders));
+            appendTenths(sb.append(" · "), Math.round(10.0 * t.units / t.orders)).append(" items/order");
+        }
+        totalsLabel.setText(sb.toString());
+    }
+
+    private void showHourly(SalesRollupStore.Hourly h) {
+        hourModel.setRowCount(0);
+        StringBuilder cell = new StringBuilder(24);
+        for (int hour = 0; hour < 24; hour++) {
+            cell.setLength(0);
+            hourModel.addRow(new Object[]{(hour < 10 ? "0" : "") + hour + ":00", h.orders[hour],
+                    Money.appendGrouped(cell, h.cents[hour]).toString()});
+        }
+    }
+
+    // 1..9 units one row each, then everything larger in one row
+    private void showBaskets(SalesRollupStore.BasketSizes b) {
+        final int open = 10;
+        long[] byUnits = new long[open + 1];
+        long orders = 0;
+        for (int i = 0; i < b.ordersByUnits.size(); i++) {
+            byUnits[Math.min(b.ordersByUnits.keyAt(i), open)] += b.ordersByUnits.valueAt(i);
+            orders += b.ordersByUnits.valueAt(i);
+        }
+        basketModel.setRowCount(0);
+        for (int units = 0; units <= open; units++) {
+            if (byUnits[units] == 0) continue;
+            String label = units == open ? open + "+" : String.valueOf(units);
+            basketModel.addRow(new Object[]{label, byUnits[units],
+                    appendTenths(new StringBuilder(8), Math.round(1000.0 * byUnits[units] / orders)).append('%').toString()});
+        }
+    }
+
     private void refreshChartAndSummary() {
     	String selected = (String) periodBox.getSelectedItem();
     	final String view = (selected == null) ? "Daily" : selected;
-
-        // bucketsCustomer: label -> (customer -> total)
-        LinkedHashMap<String, LinkedHashMap<String, Double>> bucketsCustomer = new LinkedHashMap<>();
-
-        // Gather all orders and bucket them
-        if (ordersFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(ordersFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    // datetime,customer,total
-                    String[] p = parseCsvLine(line);
-                    if (p.length >= 3) {
-                        LocalDateTime dt = parseDateSafe(p[0]);
-                        String customer = unescape(p[1]);
-                        double total = parseDoubleSafe(p[2], 0);
-
-                        String key = bucketKey(dt, view);
-                        bucketsCustomer.putIfAbsent(key, new LinkedHashMap<>());
-                        LinkedHashMap<String, Double> perCust = bucketsCustomer.get(key);
-                        perCust.put(customer, perCust.getOrDefault(customer, 0.0) + total);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        final int request = ++chartRequest;
+        final long from = fromDay, to = toDay;
+
+        started();
+        DataAccess.read(() -> {
+            long start = System.nanoTime();
+            SalesRollupStore.Buckets buckets = rollups().forRange(from, to).buckets(view, from, to);
+            Metrics.CHART_DATA.recordSince(start);
+            return buckets;
+        }, buckets -> {
+            finished();
+            if (request == chartRequest) {
+                long start = System.nanoTime();
+                showChartAndSummary(view, buckets);
+                Metrics.CHART_SHOW.recordSince(start);
             }
-        }
+        }, err -> finished());
+    }
 
-        // Sort labels chronologically
-        List<String> labels = new ArrayList<>(bucketsCustomer.keySet());
-        labels.sort(Comparator.comparing(a -> sortKey(a, view)));
-
-        // Compute grand totals per period and overall totals per customer
-        Map<String, Double> grandTotalsByLabel = new LinkedHashMap<>();
-        Map<String, Double> totalsPerCustomer = new HashMap<>();
-        for (String label : labels) {
-            double sum = 0.0;
-            for (Map.Entry<String, Double> e : bucketsCustomer.get(label).entrySet()) {
-                sum += e.getValue();
-                totalsPerCustomer.put(e.getKey(), totalsPerCustomer.getOrDefault(e.getKey(), 0.0) + e.getValue());
-            }
-            grandTotalsByLabel.put(label, sum);
-        }
+    private void showChartAndSummary(String view, SalesRollupStore.Buckets buckets) {
+        List<String> labels = buckets.labels;
 
         // Pick top customers (limit to avoid clutter) + include TOTAL
         int MAX_CUSTOMERS = 6; // show up to 6 customers + TOTAL
-        List<String> topCustomers = totalsPerCustomer.entrySet().stream()
-                .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
-                .map(Map.Entry::getKey)
-                .limit(MAX_CUSTOMERS)
-                .collect(Collectors.toList());
+        TopN top = new TopN(MAX_CUSTOMERS);
+        for (int i = 0; i < buckets.customerTotals.size(); i++) {
+            top.offer(buckets.customerTotals.keyAt(i), buckets.customerTotals.valueAt(i));
+        }
+        int[] topIds = top.ranked();
+        List<String> topCustomers = new ArrayList<>();
+        for (int id : topIds) topCustomers.add(buckets.customers[id]);
 
         // Build series map: customer -> values per label
         LinkedHashMap<String, List<Double>> series = new LinkedHashMap<>();
-        for (String cust : topCustomers) {
+        for (int id : topIds) {
             List<Double> vals = new ArrayList<>();
-            for (String label : labels) {
-                vals.add(bucketsCustomer.get(label).getOrDefault(cust, 0.0));
-            }
-            series.put(cust, vals);
+            for (IntLongMap perLabel : buckets.cents) vals.add(perLabel.get(id) / 100.0);
+            series.put(buckets.customers[id], vals);
         }
         // TOTAL series last
-        List<Double> totalVals = labels.stream().map(grandTotalsByLabel::get).collect(Collectors.toList());
+        List<Double> totalVals = new ArrayList<>();
+        for (IntLongMap perLabel : buckets.cents) totalVals.add(perLabel.sum() / 100.0);
         series.put("TOTAL", totalVals);
 
         chartPanel.setMultiSeries("Sales (" + view + ")", labels, series, "₱");
@@ -1022,301 +1269,111 @@ class AnalyticsPanel extends JPanel {
         summaryModel.setRowCount(0);
         for (String c : cols) summaryModel.addColumn(c);
 
+        // cells are formatted from the exact cents, not from the chart's doubles
+        StringBuilder cell = new StringBuilder(24);
         for (int i = 0; i < labels.size(); i++) {
-            List<Object> row = new ArrayList<>();
-            row.add(labels.get(i));
-            row.add(String.format(Locale.US, "%,.2f", totalVals.get(i)));
-            for (String cust : topCustomers) {
-                double v = series.get(cust).get(i);
-                row.add(String.format(Locale.US, "%,.2f", v));
+            IntLongMap perLabel = buckets.cents.get(i);
+            Object[] row = new Object[cols.size()];
+            row[0] = labels.get(i);
+            cell.setLength(0);
+            row[1] = Money.appendGrouped(cell, perLabel.sum()).toString();
+            for (int c = 0; c < topIds.length; c++) {
+                cell.setLength(0);
+                row[2 + c] = Money.appendGrouped(cell, perLabel.get(topIds[c])).toString();
             }
-            summaryModel.addRow(row.toArray());
-        }
-    }
-
-    private String bucketKey(LocalDateTime dt, String view) {
-        if (view == null) view = "Daily";
-        switch (view) {
-            case "Daily":
-                return dt.toLocalDate().toString(); // yyyy-MM-dd
-            case "Weekly": {
-                WeekFields wf = WeekFields.of(Locale.getDefault());
-                int week = dt.get(wf.weekOfWeekBasedYear());
-                int year = dt.get(wf.weekBasedYear());
-                return year + "-W" + String.format("%02d", week);
-            }
-            case "Monthly":
-                return dt.getYear() + "-" + String.format("%02d", dt.getMonthValue()); // yyyy-MM
-            default:
-                return dt.toLocalDate().toString();
+            summaryModel.addRow(row);
         }
     }
+}
 
-    private String sortKey(String label, String view) {
-        try {
-            switch (view) {
-                case "Daily":
-                    return label; // yyyy-MM-dd sorts fine as string
-                case "Monthly":
-                    return label; // yyyy-MM sorts fine as string
-                case "Weekly":
-                    String[] p = label.split("-W");
-                    return p[0] + String.format("%02d", Integer.parseInt(p[1]));
-            }
-        } catch (Exception ignored) {}
-        return label;
-    }
-
-    // --- Minimal CSV helpers (handle quotes) ---
-    private String[] parseCsvLine(String line) {
-        List<String> out = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '\"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '\"') {
-                    sb.append('\"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                out.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
-            }
-        }
-        out.add(sb.toString());
-        return out.toArray(new String[0]);
+// ---------------- DIAGNOSTICS PANEL (live metrics for the admin) ----------------
+// Latency histograms and counters from Metrics, refreshed every second while the tab is visible.
+// "Reset" starts counting from now, so one slow checkout can be looked at on its own.
+class DiagnosticsPanel extends JPanel {
+    private final DefaultTableModel latencyModel = new DefaultTableModel(
+            new String[]{"Metric", "Count", "Mean", "p50", "p99", "p99.9", "Max", "Unit"}, 0) {
+        @Override public boolean isCellEditable(int r, int c) { return false; }
+    };
+    private final DefaultTableModel counterModel = new DefaultTableModel(new String[]{"Counter", "Value"}, 0) {
+        @Override public boolean isCellEditable(int r, int c) { return false; }
+    };
+    private final JTextArea failures = new JTextArea(6, 80);
+    private final JLabel sinceLabel = new JLabel();
+    private Map<String, Metrics.Snapshot> baseline = new HashMap<>();
+    private Map<String, Long> counterBaseline = new HashMap<>();
+    // runs only while the panel is part of a window; disposing the dashboard stops it
+    private final javax.swing.Timer timer = new javax.swing.Timer(1000, e -> {
+        if (isShowing()) refresh();
+    });
+
+    DiagnosticsPanel() {
+        super(new BorderLayout());
+        failures.setEditable(false);
+        failures.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+
+        JButton reset = new JButton("Reset");
+        reset.addActionListener(e -> {
+            Map<String, Metrics.Snapshot> b = new HashMap<>();
+            for (Metrics.Snapshot s : Metrics.histogramSnapshots()) b.put(s.name, s);
+            baseline = b;
+            counterBaseline = Metrics.counterValues();
+            sinceLabel.setText("since " + LocalTime.now().withNano(0));
+            refresh();
+        });
+        sinceLabel.setText("since start");
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(reset);
+        top.add(sinceLabel);
+
+        JTable latencyTable = new JTable(latencyModel);
+        latencyTable.getColumnModel().getColumn(0).setPreferredWidth(220);
+        JTable counterTable = new JTable(counterModel);
+        counterTable.getColumnModel().getColumn(0).setPreferredWidth(180);
+        JSplitPane tables = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+                new JScrollPane(latencyTable), new JScrollPane(counterTable));
+        tables.setResizeWeight(0.75);
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(new JLabel("Recent failures"), BorderLayout.NORTH);
+        bottom.add(new JScrollPane(failures), BorderLayout.CENTER);
+
+        add(top, BorderLayout.NORTH);
+        add(tables, BorderLayout.CENTER);
+        add(bottom, BorderLayout.SOUTH);
+
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & java.awt.event.HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) refresh();
+        });
     }
 
-    private String unescape(String s) {
-        if (s.startsWith("\"") && s.endsWith("\"")) {
-            String inner = s.substring(1, s.length() - 1);
-            return inner.replace("\"\"", "\"");
-        }
-        return s;
+    @Override public void addNotify() {
+        super.addNotify();
+        timer.start();
     }
 
-    private LocalDateTime parseDateSafe(String s) {
-        try { return LocalDateTime.parse(s); } catch (Exception e) { return LocalDateTime.now(); }
-    }
-    private int parseIntSafe(String s, int def) {
-        try { return Integer.parseInt(s.trim()); } catch (Exception e) { return def; }
-    }
-    private double parseDoubleSafe(String s, double def) {
-        try { return Double.parseDouble(s.trim()); } catch (Exception e) { return def; }
+    @Override public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
     }
-}
-
-//---------------- Simple Line Chart (no external libs) ----------------
-class SimpleLineChartPanel extends JPanel {
-    // single-series (backward compatible)
-    private List<String> labels = new ArrayList<>();
-    private List<Double> values = new ArrayList<>();
-    private String seriesName = "";
-    private String currencyPrefix = "";
-
-    // multi-series
-    private boolean multi = false;
-    private LinkedHashMap<String, List<Double>> seriesMap = new LinkedHashMap<>();
-    private List<Color> palette;
-
-    public SimpleLineChartPanel() {
-        setPreferredSize(new Dimension(600, 400));
-        setBackground(Color.WHITE);
-        palette = defaultPalette();
-    }
-
-    // old API (kept)
-    public void setSeries(String name, List<String> labels, List<Double> values, String currencyPrefix) {
-        this.multi = false;
-        this.seriesName = name == null ? "" : name;
-        this.labels = new ArrayList<>(labels == null ? Collections.emptyList() : labels);
-        this.values = new ArrayList<>(values == null ? Collections.emptyList() : values);
-        this.currencyPrefix = currencyPrefix == null ? "" : currencyPrefix;
-        repaint();
-    }
-
-    // new API (multi-series per customer + TOTAL)
-    public void setMultiSeries(String name, List<String> labels, LinkedHashMap<String, List<Double>> seriesMap, String currencyPrefix) {
-        this.multi = true;
-        this.seriesName = name == null ? "" : name;
-        this.labels = new ArrayList<>(labels == null ? Collections.emptyList() : labels);
-        this.seriesMap = new LinkedHashMap<>(seriesMap == null ? new LinkedHashMap<>() : seriesMap);
-        this.currencyPrefix = currencyPrefix == null ? "" : currencyPrefix;
-        repaint();
-    }
-
-    @Override
-    protected void paintComponent(Graphics g0) {
-        super.paintComponent(g0);
-        Graphics2D g = (Graphics2D) g0;
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        int w = getWidth();
-        int h = getHeight();
-
-        int padLeft = 70;
-        int padRight = 30;
-        int padTop = 50;   // extra for legend
-        int padBottom = 80;
-
-        // Title
-        g.setFont(g.getFont().deriveFont(Font.BOLD, 14f));
-        g.setColor(Color.DARK_GRAY);
-        g.drawString(seriesName, padLeft, padTop - 30);
-
-        // Axes
-        int x0 = padLeft;
-        int y0 = h - padBottom;
-        int x1 = w - padRight;
-        int y1 = padTop;
-
-        g.setColor(Color.GRAY);
-        g.drawLine(x0, y0, x1, y0); // X axis
-        g.drawLine(x0, y0, x0, y1); // Y axis
-
-        // Early exit if no data
-        if ((!multi && (values == null || values.isEmpty())) ||
-            (multi && (seriesMap == null || seriesMap.isEmpty()))) {
-            g.setColor(Color.DARK_GRAY);
-            g.drawString("No data", x0 + 10, y0 - 10);
-            return;
-        }
-
-        // Determine max
-        double max = 1.0;
-        if (multi) {
-            for (List<Double> vs : seriesMap.values()) {
-                for (Double v : vs) max = Math.max(max, v == null ? 0 : v);
-            }
-        } else {
-            for (Double v : values) max = Math.max(max, v == null ? 0 : v);
-        }
-        if (max == 0) max = 1.0;
-
-        int points = multi ? (labels == null ? 0 : labels.size()) : (values == null ? 0 : values.size());
-        int plotWidth = x1 - x0;
-        int plotHeight = y0 - y1;
-
-        // Gridlines + Y labels (5)
-        g.setFont(g.getFont().deriveFont(11f));
-        g.setColor(new Color(230, 230, 230));
-        for (int i = 0; i <= 5; i++) {
-            int y = y0 - (i * plotHeight / 5);
-            g.drawLine(x0, y, x1, y);
-            double v = (max * i / 5.0);
-            g.setColor(Color.DARK_GRAY);
-            g.drawString(currencyPrefix + String.format(Locale.US, "%,.0f", v), 5, y + 4);
-            g.setColor(new Color(230, 230, 230));
-        }
-
-        // X labels + vertical guide lines
-        int step = Math.max(1, points / 10);
-        g.setColor(Color.DARK_GRAY);
-        for (int i = 0; i < points; i += step) {
-            int x = x0 + (int) (plotWidth * (i / (double) Math.max(1, points - 1)));
-            g.drawLine(x, y0, x, y0 + 4); // tick
-            String label = labels.get(i);
-            String shortLabel = label.length() > 10 ? label.substring(0, 10) + "…" : label;
-            drawRotate(g, shortLabel, x - 10, y0 + 22, -45);
-
-            // vertical guide
-            g.setColor(Color.LIGHT_GRAY);
-            g.drawLine(x, y0, x, y1);
-            g.setColor(Color.DARK_GRAY);
-        }
 
-        // Draw lines
-        if (!multi) {
-            g.setStroke(new BasicStroke(2f));
-            g.setColor(new Color(30, 144, 255)); // single series color
-            int prevX = -1, prevY = -1;
-            for (int i = 0; i < points; i++) {
-                double v = values.get(i);
-                int x = x0 + (int) (plotWidth * (i / (double) Math.max(1, points - 1)));
-                int y = y0 - (int) ((v / max) * plotHeight);
-                if (prevX != -1) g.drawLine(prevX, prevY, x, y);
-                g.fillOval(x - 3, y - 3, 6, 6);
-                prevX = x; prevY = y;
-            }
-        } else {
-            // Draw each series with its own color; TOTAL last and thicker
-            int si = 0;
-            for (Map.Entry<String, List<Double>> e : seriesMap.entrySet()) {
-                String name = e.getKey();
-                List<Double> vs = e.getValue();
-                Color c = name.equals("TOTAL") ? Color.BLACK : palette.get(si % palette.size());
-                float stroke = name.equals("TOTAL") ? 3.0f : 2.0f;
-
-                g.setColor(c);
-                g.setStroke(new BasicStroke(stroke));
-                int prevX = -1, prevY = -1;
-                for (int i = 0; i < points; i++) {
-                    double v = (i < vs.size() && vs.get(i) != null) ? vs.get(i) : 0.0;
-                    int x = x0 + (int) (plotWidth * (i / (double) Math.max(1, points - 1)));
-                    int y = y0 - (int) ((v / max) * plotHeight);
-                    if (prevX != -1) g.drawLine(prevX, prevY, x, y);
-                    g.fillOval(x - 3, y - 3, 6, 6);
-                    prevX = x; prevY = y;
-                }
-                si++;
+    private void refresh() {
+        latencyModel.setRowCount(0);
+        for (Metrics.Snapshot now : Metrics.histogramSnapshots()) {
+            Metrics.Snapshot s = now.minus(baseline.get(now.name));
+            if (s.count == 0) {
+                latencyModel.addRow(new Object[]{s.name, 0L, "", "", "", "", "", ""});
+                continue;
             }
-
-            // Legend
-            drawLegend(g, x0, y1 - 10, seriesMap.keySet());
+            latencyModel.addRow(new Object[]{s.name, s.count,
+                    Metrics.format(s, Math.round(s.mean())), Metrics.format(s, s.percentile(0.50)),
+                    Metrics.format(s, s.percentile(0.99)), Metrics.format(s, s.percentile(0.999)),
+                    Metrics.format(s, s.max()), s.nanos ? "ms" : ""});
         }
-    }
-
-    private void drawLegend(Graphics2D g, int xLeft, int yTop, Collection<String> names) {
-        int x = xLeft;
-        int y = yTop;
-        int box = 10;
-        int gap = 8;
-        int colGap = 20;
-
-        int si = 0;
-        for (String name : names) {
-            Color c = name.equals("TOTAL") ? Color.BLACK : palette.get(si % palette.size());
-            g.setColor(c);
-            g.fillRect(x, y, box, box);
-            g.setColor(Color.DARK_GRAY);
-            g.drawRect(x, y, box, box);
-            g.drawString(name, x + box + 6, y + box - 1);
-            x += (box + 6 + g.getFontMetrics().stringWidth(name) + colGap);
-            si++;
-            // wrap if reaching right edge
-            if (x > getWidth() - 150) {
-                x = xLeft;
-                y += box + gap;
-            }
+        counterModel.setRowCount(0);
+        for (Map.Entry<String, Long> c : Metrics.counterValues().entrySet()) {
+            counterModel.addRow(new Object[]{c.getKey(), c.getValue() - counterBaseline.getOrDefault(c.getKey(), 0L)});
         }
-    }
-
-    private List<Color> defaultPalette() {
-        return Arrays.asList(
-                new Color(33, 150, 243),  // blue
-                new Color(244, 67, 54),   // red
-                new Color(76, 175, 80),   // green
-                new Color(255, 152, 0),   // orange
-                new Color(156, 39, 176),  // purple
-                new Color(0, 188, 212),   // cyan
-                new Color(121, 85, 72),   // brown
-                new Color(63, 81, 181),   // indigo
-                new Color(205, 220, 57),  // lime
-                new Color(0, 150, 136)    // teal
-        );
-    }
-
-    private void drawRotate(Graphics2D g2, String text, int x, int y, int angle) {
-        g2.translate(x, y);
-        g2.rotate(Math.toRadians(angle));
-        g2.drawString(text, 0, 0);
-        g2.rotate(-Math.toRadians(angle));
-        g2.translate(-x, -y);
+        String text = String.join("\n", Metrics.recentFailures());
+        if (!text.equals(failures.getText())) failures.setText(text);
     }
 }
 
@@ -1333,6 +1390,11 @@ class UserSettingsDialog extends JDialog {
     private final File orderItemsFile;
     private final File transactionsFile;
 
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private int historyPage = 0;
+    private int historyPages = 1;
+    private final JLabel pageLabel = new JLabel();
+
     public UserSettingsDialog(CashierPanel parent, String currentUsername, File ordersFile, File orderItemsFile, File transactionsFile) {
         super(parent, "User Settings", true);
         this.currentUsername = currentUsername;
@@ -1374,10 +1436,12 @@ class UserSettingsDialog extends JDialog {
         acct.add(lastField);
 
         // load existing profile values if present
-        String[] prof = LoginScreen.profiles.getOrDefault(currentUsername, new String[]{"", "", ""});
-        firstField.setText(prof[0]);
-        middleField.setText(prof[1]);
-        lastField.setText(prof[2]);
+        DataAccess.read(() -> AccountStore.shared().get(currentUsername), account -> {
+            if (account == null) return;
+            firstField.setText(account.first);
+            middleField.setText(account.middle);
+            lastField.setText(account.last);
+        });
 
         JPanel acctButtons = new JPanel();
         saveBtn = new JButton("Save Changes");
@@ -1430,7 +1494,7 @@ class UserSettingsDialog extends JDialog {
         JPanel histPanel = new JPanel(new BorderLayout(8, 8));
         histPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
 
-        DefaultTableModel histModel = new DefaultTableModel(new String[]{"Datetime", "Total"}, 0) {
+        DefaultTableModel histModel = new DefaultTableModel(new String[]{"Order #", "Datetime", "Total"}, 0) {
             @Override public boolean isCellEditable(int r, int c) { return false; }
         };
         JTable histTable = new JTable(histModel);
@@ -1438,8 +1502,13 @@ class UserSettingsDialog extends JDialog {
         histPanel.add(histScroll, BorderLayout.CENTER);
 
         JPanel histButtons = new JPanel();
+        JButton olderBtn = new JButton("◀ Older");
+        JButton newerBtn = new JButton("Newer ▶");
         JButton refreshHist = new JButton("Refresh");
         JButton viewItems = new JButton("View Items");
+        histButtons.add(olderBtn);
+        histButtons.add(pageLabel);
+        histButtons.add(newerBtn);
         histButtons.add(refreshHist);
         histButtons.add(viewItems);
         histPanel.add(histButtons, BorderLayout.SOUTH);
@@ -1452,8 +1521,23 @@ class UserSettingsDialog extends JDialog {
         cancelBtn.addActionListener(e -> dispose());
         saveBtn.addActionListener(e -> saveChanges());
 
-        // refresh history initially
-        refreshHist.addActionListener(e -> loadOrderHistory(histModel, currentUsername));
+        // refresh history initially (page 0 = most recent orders)
+        refreshHist.addActionListener(e -> {
+            historyPage = 0;
+            loadOrderHistory(histModel, currentUsername);
+        });
+        olderBtn.addActionListener(e -> {
+            if (historyPage + 1 < historyPages) {
+                historyPage++;
+                loadOrderHistory(histModel, currentUsername);
+            }
+        });
+        newerBtn.addActionListener(e -> {
+            if (historyPage > 0) {
+                historyPage--;
+                loadOrderHistory(histModel, currentUsername);
+            }
+        });
         refreshHist.doClick(); // load once to populate table
 
         viewItems.addActionListener(e -> {
@@ -1462,8 +1546,10 @@ class UserSettingsDialog extends JDialog {
                 JOptionPane.showMessageDialog(this, "Select an order first.");
                 return;
             }
-            String datetime = (String) histModel.getValueAt(sel, 0);
-            showOrderItems(datetime);
+            if (DataAccess.isLoading(histModel)) return;
+            String orderId = (String) histModel.getValueAt(sel, 0);
+            String datetime = (String) histModel.getValueAt(sel, 1);
+            showOrderItems(orderId, datetime);
         });
 
         setVisible(true);
@@ -1481,116 +1567,103 @@ class UserSettingsDialog extends JDialog {
             return;
         }
 
-        // Ensure current user exists in memory
-        if (!LoginScreen.customers.containsKey(currentUsername)) {
-            JOptionPane.showMessageDialog(this, "Error: Current user not found!");
-            return;
-        }
-
-        // If only password left empty, keep the old password
-        String effectivePassword = newPassword.isEmpty() ? LoginScreen.customers.get(currentUsername) : newPassword;
-
-        // Check if new username already exists (and isn't the same as current)
-        if (!newUsername.equals(currentUsername) && LoginScreen.customers.containsKey(newUsername)) {
-            JOptionPane.showMessageDialog(this, "Username already exists!");
-            return;
-        }
-
-        // --- Update in-memory customers map and rewrite customers.txt ---
-        LoginScreen.customers.remove(currentUsername);
-        LoginScreen.customers.put(newUsername, effectivePassword);
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(LoginScreen.customerFile))) {
-            for (Map.Entry<String, String> entry : LoginScreen.customers.entrySet()) {
-                writer.write(entry.getKey() + ":" + entry.getValue());
-                writer.newLine();
+        // read, merge and rename on the write lane: one lookup and one append, then report back on the EDT
+        saveBtn.setEnabled(false);
+        DataAccess.write(() -> {
+            AccountStore.Account current = AccountStore.shared().get(currentUsername);
+            if (current == null) return "Error: Current user not found!";
+
+            // If only password left empty, keep the old password
+            String effectivePassword = newPassword.isEmpty() ? current.password : newPassword;
+            // use new values if entered, otherwise keep existing
+            String f = first.isEmpty() ? current.first : first;
+            String m = middle.isEmpty() ? current.middle : middle;
+            String l = last.isEmpty() ? current.last : last;
+
+            // checkouts in flight for the old name are ordered against this by the order service's customer locks
+            if (!OrderService.shared().renameCustomer(currentUsername, newUsername, effectivePassword, new String[]{f, m, l})) {
+                return "Username already exists!";
             }
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Failed to save changes to customers file.", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        // --- Update profiles map and file (move profile if username changed) ---
-        String[] existingProfile = LoginScreen.profiles.getOrDefault(currentUsername, new String[]{"", "", ""});
-        // use new values if entered, otherwise keep existing
-        String f = first.isEmpty() ? existingProfile[0] : first;
-        String m = middle.isEmpty() ? existingProfile[1] : middle;
-        String l = last.isEmpty() ? existingProfile[2] : last;
-        // remove old
-        LoginScreen.profiles.remove(currentUsername);
-        LoginScreen.profiles.put(newUsername, new String[]{f, m, l});
-        // rewrite profiles file
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(LoginScreen.profilesFile))) {
-            for (Map.Entry<String, String[]> e : LoginScreen.profiles.entrySet()) {
-                String[] v = e.getValue();
-                bw.write(e.getKey() + ":" + v[0] + ":" + v[1] + ":" + v[2]);
-                bw.newLine();
+            return null;
+        }, problem -> {
+            saveBtn.setEnabled(true);
+            if (problem != null) {
+                JOptionPane.showMessageDialog(this, problem);
+                return;
             }
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Failed to save profile changes.", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        // If username changed, update any orders.csv entries? **(We will NOT rewrite orders.csv or order_items.csv)**
-        // NOTE: We keep historical orders as-is (they reference the old username). That keeps audit trail.
-        // If you want to migrate historical orders to the new username, I can add that behavior.
+            // the cashier window checks out under the new name from here on
+            parentPanel.updateCustomerName(newUsername);
 
-        // Update UI session
-        parentPanel.updateCustomerName(newUsername);
+            // If username changed, update any orders.csv entries? **(We will NOT rewrite orders.csv or order_items.csv)**
+            // NOTE: We keep historical orders as-is (they reference the old username). That keeps audit trail.
+            // If you want to migrate historical orders to the new username, I can add that behavior.
 
-        JOptionPane.showMessageDialog(this, "Account updated successfully!");
-        NotificationCenter.addCustomerNotification("Account updated for user: " + newUsername);
+            JOptionPane.showMessageDialog(this, "Account updated successfully!");
+            NotificationCenter.addCustomerNotification(newUsername, "Account updated for user: " + newUsername);
 
-        dispose();
+            dispose();
+        }, err -> {
+            saveBtn.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Failed to save profile changes.", "Error", JOptionPane.ERROR_MESSAGE);
+        });
     }
 
     private void loadOrderHistory(DefaultTableModel model, String username) {
+        DataAccess.showLoading(model);
+        int pageNo = historyPage;
+        // only this customer's rows are read, via the per-customer offset index
+        DataAccess.read(() -> CustomerOrderIndex.of(ordersFile).page(username, pageNo, HISTORY_PAGE_SIZE),
+                page -> showOrderHistory(model, username, page));
+    }
+
+    private void showOrderHistory(DefaultTableModel model, String username, CustomerOrderIndex.Page page) {
         model.setRowCount(0);
-        if (!ordersFile.exists()) return;
-        try (BufferedReader br = new BufferedReader(new FileReader(ordersFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] p = parseCsvLine(line);
-                if (p.length >= 3) {
-                    String datetime = p[0];
-                    String customer = unescape(p[1]);
-                    String total = p[2];
-                    if (customer.equals(username)) {
-                        model.addRow(new Object[]{datetime, total});
-                    }
+        historyPages = Math.max(1, (page.totalOrders + HISTORY_PAGE_SIZE - 1) / HISTORY_PAGE_SIZE);
+        pageLabel.setText("Page " + (historyPage + 1) + " of " + historyPages);
+        for (String line : page.rows) {
+            String[] p = CsvScanner.split(line);
+            if (p.length >= 3) {
+                String datetime = p[0];
+                String customer = p[1];
+                String total = p[2];
+                String orderId = p.length >= 4 ? p[3] : ""; // legacy rows have no order id
+                if (customer.equals(username)) {
+                    model.addRow(new Object[]{orderId, datetime, total});
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
-    private void showOrderItems(String datetime) {
+    private void showOrderItems(String orderId, String datetime) {
+        DataAccess.read(() -> readOrderItems(orderId, datetime), itemsModel -> showOrderItems(datetime, itemsModel));
+    }
+
+    private DefaultTableModel readOrderItems(String orderId, String datetime) throws IOException {
         DefaultTableModel itemsModel = new DefaultTableModel(new String[]{"Item", "Qty", "Line Total"}, 0) {
             @Override public boolean isCellEditable(int r, int c) { return false; }
         };
-        if (orderItemsFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(orderItemsFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] p = parseCsvLine(line);
-                    // datetime,item,qty,line_total
-                    if (p.length >= 4) {
-                        String dt = p[0];
-                        if (dt.equals(datetime)) {
-                            String item = unescape(p[1]);
-                            String qty = p[2];
-                            String lineTotal = p[3];
-                            itemsModel.addRow(new Object[]{item, qty, lineTotal});
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        long id = 0;
+        try { id = Long.parseLong(orderId.trim()); } catch (Exception ignored) {}
+
+        // orders with an id: one positioned read of their rows; legacy orders: match by datetime
+        List<String> rows = id > 0 ? OrderItemsIndex.of(orderItemsFile).readRows(id) : null;
+        if (rows != null) {
+            for (String line : rows) {
+                String[] p = CsvScanner.split(line);
+                if (p.length >= 4) itemsModel.addRow(new Object[]{p[1], p[2], p[3]});
             }
+        } else {
+            // datetime,item,qty,line_total: compare the datetime in place, build strings only for matches
+            CsvScanner.scan(orderItemsFile, r -> {
+                if (r.fieldCount() >= 4 && r.equalsAscii(0, datetime)) {
+                    itemsModel.addRow(new Object[]{r.string(1), r.string(2), r.string(3)});
+                }
+            });
         }
+        return itemsModel;
+    }
 
+    private void showOrderItems(String datetime, DefaultTableModel itemsModel) {
         JTable t = new JTable(itemsModel);
         JScrollPane sp = new JScrollPane(t);
         JDialog dlg = new JDialog(this, "Items for " + datetime, true);
@@ -1602,37 +1675,284 @@ class UserSettingsDialog extends JDialog {
         dlg.add(close, BorderLayout.SOUTH);
         dlg.setVisible(true);
     }
+}
 
-    // minimal CSV helpers (same logic used elsewhere)
-    private String[] parseCsvLine(String line) {
-        List<String> out = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '\"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '\"') {
-                    sb.append('\"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
+// ---------------- MENU WATCHER (pushes menu.txt edits to open windows) ----------------
+// One daemon thread per JVM watches the directory holding menu.txt. Bursts of events (editors and
+// our own writer touch the file several times per save) are debounced; after the quiet period the
+// catalog re-reads the file and publishes only the rows that changed to its listeners.
+class MenuWatcher {
+    private static final long DEBOUNCE_MS = 250;
+    private static MenuWatcher started;
+
+    private final MenuCatalog catalog;
+
+    static synchronized void start(MenuCatalog catalog) {
+        if (started != null) return;
+        started = new MenuWatcher(catalog);
+        Thread t = new Thread(started::run, "menu-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private MenuWatcher(MenuCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    private void run() {
+        File menu = catalog.file().getAbsoluteFile();
+        java.nio.file.Path dir = menu.getParentFile().toPath();
+        String name = menu.getName();
+        try (java.nio.file.WatchService ws = dir.getFileSystem().newWatchService()) {
+            dir.register(ws, java.nio.file.StandardWatchEventKinds.ENTRY_CREATE,
+                    java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY,
+                    java.nio.file.StandardWatchEventKinds.ENTRY_DELETE);
+            long due = 0;
+            while (true) {
+                long wait = due == 0 ? -1 : Math.max(1, due - System.currentTimeMillis());
+                java.nio.file.WatchKey key = wait < 0 ? ws.take() : ws.poll(wait, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (java.nio.file.WatchEvent<?> ev : key.pollEvents()) {
+                        Object ctx = ev.context();
+                        if (ev.kind() == java.nio.file.StandardWatchEventKinds.OVERFLOW
+                                || (ctx != null && ctx.toString().equals(name))) {
+                            due = System.currentTimeMillis() + DEBOUNCE_MS;
+                        }
+                    }
+                    key.reset();
+                }
+                if (due != 0 && System.currentTimeMillis() >= due) {
+                    due = 0;
+                    catalog.current(); // re-parses only if size/mtime changed, then publishes the diff
                 }
-            } else if (c == ',' && !inQuotes) {
-                out.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Metrics.failure("MenuWatcher", e);
+        }
+    }
+}
+
+// ---------------- FILE-BACKED ROWS (virtualized table/list models) ----------------
+// A line-offset index over a text file (12 bytes per kept line) plus an LRU cache of decoded rows.
+// Models ask for rows on the EDT; a miss returns null ("…" on screen) and fetches the surrounding
+// window, and the one after it, with a single positioned read in the background. Memory for decoded
+// rows stays at CACHE rows however long the file gets.
+class FileRows {
+    interface Decoder { String[] decode(String line); }
+    interface RowFilter { boolean accept(CsvScanner row); } // which lines of the file are rows
+
+    static final String PENDING = "…";
+    private static final int WINDOW = 128;
+    private static final int CACHE = 1024;
+
+    // immutable snapshot of the offsets; a rescan appends to a copy
+    static final class Index {
+        static final Index EMPTY = new Index(new long[0], new int[0], 0, 0, 0, 0);
+
+        final long[] offsets;
+        final int[] lengths;
+        final int count;
+        final long covered;      // bytes of the file indexed so far (always at a line boundary)
+        final long fileKey;      // size of the first line, to notice a replaced file
+        final int generation;    // bumps when the file was replaced and row numbers changed
+
+        Index(long[] offsets, int[] lengths, int count, long covered, long fileKey, int generation) {
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.count = count;
+            this.covered = covered;
+            this.fileKey = fileKey;
+            this.generation = generation;
         }
-        out.add(sb.toString());
-        return out.toArray(new String[0]);
     }
 
-    private String unescape(String s) {
-        if (s.startsWith("\"") && s.endsWith("\"")) {
-            String inner = s.substring(1, s.length() - 1);
-            return inner.replace("\"\"", "\"");
+    private final File file;
+    private final RowFilter filter;
+    private final Decoder decoder;
+    private volatile Index index = Index.EMPTY;
+
+    // EDT only
+    private final Map<Integer, String[]> cache = new LinkedHashMap<Integer, String[]>(CACHE, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+            return size() > CACHE;
+        }
+    };
+    private final Set<Integer> fetching = new HashSet<>();
+    private final List<java.util.function.BiConsumer<Integer, Integer>> loadedListeners = new ArrayList<>();
+
+    // every non-blank line is a row
+    FileRows(File file, Decoder decoder) {
+        this(file, row -> true, decoder);
+    }
+
+    FileRows(File file, RowFilter filter, Decoder decoder) {
+        this.file = file;
+        this.filter = filter;
+        this.decoder = decoder;
+    }
+
+    int size() {
+        return index.count;
+    }
+
+    // background: index whatever was appended since the last scan (or everything, if the file was replaced).
+    // Only offsets are kept: CsvScanner splits rows in place and nothing is decoded until a row is shown.
+    Index scan() throws IOException {
+        Index from = index;
+        long size = file.exists() ? file.length() : 0;
+        long key = firstLineLength();
+        boolean reset = size < from.covered || key != from.fileKey && from.covered > 0;
+        if (reset) from = new Index(new long[0], new int[0], 0, 0, key, from.generation + 1);
+        if (size == from.covered) return from;
+
+        Index base = from;
+        long[][] offsets = {base.offsets};
+        int[][] lengths = {base.lengths};
+        int[] count = {base.count};
+        long covered = CsvScanner.scan(file, base.covered, size, r -> {
+            if (!filter.accept(r)) return;
+            int n = count[0];
+            if (n == offsets[0].length) {
+                int cap = Math.max(1024, n * 2);
+                offsets[0] = Arrays.copyOf(offsets[0], cap);
+                lengths[0] = Arrays.copyOf(lengths[0], cap);
+            } else if (offsets[0] == base.offsets) { // never write into a published snapshot
+                offsets[0] = offsets[0].clone();
+                lengths[0] = lengths[0].clone();
+            }
+            offsets[0][n] = r.rowOffset();
+            lengths[0][n] = r.rowLength();
+            count[0] = n + 1;
+        });
+        return new Index(offsets[0], lengths[0], count[0], covered, key, base.generation);
+    }
+
+    // EDT: swap in a scanned index; cached rows stay valid unless the file was replaced
+    void publish(Index next) {
+        if (next.generation != index.generation) cache.clear();
+        index = next;
+    }
+
+    void addLoadedListener(java.util.function.BiConsumer<Integer, Integer> l) {
+        loadedListeners.add(l);
+    }
+
+    // EDT: decoded row or null while it is being fetched
+    String[] get(int row) {
+        String[] cached = cache.get(row);
+        if (cached != null) return cached;
+        int start = row / WINDOW * WINDOW;
+        fetch(start);
+        fetch(start + WINDOW); // prefetch the next window for scrolling down
+        return null;
+    }
+
+    // background: one row, bypassing the cache (e.g. to act on a selection)
+    String[] load(int row) throws IOException {
+        return readWindow(index, row, row + 1).get(0);
+    }
+
+    private void fetch(int start) {
+        Index idx = index;
+        if (start >= idx.count || !fetching.add(start)) return;
+        int end = Math.min(idx.count, start + WINDOW);
+        DataAccess.read(() -> readWindow(idx, start, end), rows -> {
+            fetching.remove(start);
+            if (idx.generation != index.generation) return;
+            for (int i = 0; i < rows.size(); i++) cache.put(start + i, rows.get(i));
+            for (java.util.function.BiConsumer<Integer, Integer> l : loadedListeners) l.accept(start, start + rows.size() - 1);
+        }, err -> fetching.remove(start));
+    }
+
+    private List<String[]> readWindow(Index idx, int start, int end) throws IOException {
+        long from = idx.offsets[start];
+        long to = idx.offsets[end - 1] + idx.lengths[end - 1];
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && ch.read(buf, from + buf.position()) >= 0) { }
+        }
+        byte[] bytes = buf.array();
+        List<String[]> rows = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            int off = (int) (idx.offsets[i] - from);
+            int len = idx.lengths[i] - 1; // drop '\n'
+            String[] row = decoder.decode(text(bytes, off, len));
+            rows.add(row == null ? new String[0] : row);
+        }
+        return rows;
+    }
+
+    private static String text(byte[] b, int off, int len) {
+        if (len > 0 && b[off + len - 1] == '\r') len--;
+        return new String(b, off, len, StandardCharsets.UTF_8);
+    }
+
+    private long firstLineLength() throws IOException {
+        if (!file.exists()) return 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 256)) {
+            long n = 0;
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') n++;
+            return n + 1;
+        }
+    }
+
+    static class TableModel extends AbstractTableModel {
+        private final FileRows rows;
+        private final String[] columns;
+
+        TableModel(FileRows rows, String... columns) {
+            this.rows = rows;
+            this.columns = columns;
+            rows.addLoadedListener(this::fireTableRowsUpdated);
+        }
+
+        // rescan the file in the background and show the new row count
+        void reload() {
+            DataAccess.read(rows::scan, idx -> {
+                rows.publish(idx);
+                fireTableDataChanged();
+            });
+        }
+
+        @Override public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override public String getColumnName(int c) {
+            return columns[c];
+        }
+
+        @Override public Object getValueAt(int r, int c) {
+            String[] row = rows.get(r);
+            if (row == null) return PENDING;
+            return c < row.length ? row[c] : "";
+        }
+    }
+
+    static class ListModel extends AbstractListModel<String> {
+        private final FileRows rows;
+        private final java.util.function.BiFunction<Integer, String[], String> format;
+
+        ListModel(FileRows rows, java.util.function.BiFunction<Integer, String[], String> format) {
+            this.rows = rows;
+            this.format = format;
+            rows.addLoadedListener((a, b) -> fireContentsChanged(this, a, b));
+        }
+
+        @Override public int getSize() {
+            return rows.size();
+        }
+
+        @Override public String getElementAt(int i) {
+            String[] row = rows.get(i);
+            return row == null ? PENDING : format.apply(i, row);
         }
-        return s;
     }
 }
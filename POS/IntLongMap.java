@@ -0,0 +1,75 @@
+package billgenerator;
+
+import java.util.*;
+
+// int key -> long sum; entries stay in insertion order and are read by position (keyAt/valueAt)
+final class IntLongMap {
+    private int[] keys = new int[8];
+    private long[] values = new long[8];
+    private int[] table = new int[16]; // slot -> position + 1, 0 = empty
+    private int size;
+
+    void add(int key, long delta) {
+        int slot = slot(key);
+        int p = table[slot];
+        if (p != 0) {
+            values[p - 1] += delta;
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = delta;
+        size++;
+        if (size * 2 > table.length) rehash();
+        else table[slot] = size;
+    }
+
+    long get(int key) {
+        int p = table[slot(key)];
+        return p == 0 ? 0 : values[p - 1];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int keyAt(int i) {
+        return keys[i];
+    }
+
+    long valueAt(int i) {
+        return values[i];
+    }
+
+    long sum() {
+        long t = 0;
+        for (int i = 0; i < size; i++) t += values[i];
+        return t;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    // slot holding key, or the empty slot where it belongs; the home slot is the top log2(capacity) bits
+    // of the Fibonacci hash, so dense ids spread over the whole table however large it gets
+    private int slot(int key) {
+        int mask = table.length - 1;
+        int slot = (key * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+        while (table[slot] != 0 && keys[table[slot] - 1] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int i = 0; i < size; i++) table[slot(keys[i])] = i + 1;
+    }
+}
@@ -0,0 +1,191 @@
+package billgenerator;
+
+import javax.swing.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// ---------------- MENU CATALOG (menu.txt parsed once, shared by every window) ----------------
+// menu.txt: item,price,category
+// Holds an immutable snapshot with typed items, pre-parsed prices and a category index. The snapshot is
+// re-read only when the file's size or modification time changes; admin saves swap it in directly.
+class MenuCatalog {
+    static final class Item {
+        final String name;
+        final String priceText; // as typed by the admin, written back unchanged
+        final long priceCents;  // Money.INVALID if priceText is not a number
+        final String category;
+
+        Item(String name, String priceText, String category) {
+            this.name = name;
+            this.priceText = priceText;
+            this.category = category;
+            this.priceCents = Money.parse(priceText);
+        }
+
+        boolean hasPrice() {
+            return priceCents != Money.INVALID;
+        }
+
+        String toLine() {
+            return name + "," + priceText + "," + category;
+        }
+
+        // identity of a menu row: an item moved to another category counts as removed + added
+        String key() {
+            return category.toLowerCase(Locale.ROOT) + "\u0000" + name;
+        }
+    }
+
+    // what changed between two snapshots; changed holds {old, new} pairs with the same key
+    static final class Diff {
+        final List<Item> added = new ArrayList<>();
+        final List<Item> removed = new ArrayList<>();
+        final List<Item[]> changed = new ArrayList<>();
+
+        boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+        }
+
+        static Diff between(Snapshot before, Snapshot after) {
+            Diff d = new Diff();
+            Map<String, Item> old = new LinkedHashMap<>();
+            for (Item it : before.items) old.putIfAbsent(it.key(), it);
+            Set<String> seen = new HashSet<>();
+            for (Item it : after.items) {
+                if (!seen.add(it.key())) continue;
+                Item prev = old.get(it.key());
+                if (prev == null) d.added.add(it);
+                else if (!prev.priceText.equals(it.priceText)) d.changed.add(new Item[]{prev, it});
+            }
+            for (Item it : old.values()) {
+                if (!seen.contains(it.key())) d.removed.add(it);
+            }
+            return d;
+        }
+    }
+
+    static final class Snapshot {
+        final List<Item> items;
+        private final Map<String, List<Item>> byCategory;
+        final long modified;
+        final long length;
+
+        Snapshot(List<Item> items, long modified, long length) {
+            this.items = Collections.unmodifiableList(new ArrayList<>(items));
+            Map<String, List<Item>> idx = new HashMap<>();
+            for (Item it : this.items) {
+                idx.computeIfAbsent(it.category.toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(it);
+            }
+            this.byCategory = idx;
+            this.modified = modified;
+            this.length = length;
+        }
+
+        List<Item> byCategory(String category) {
+            List<Item> l = byCategory.get(category.toLowerCase(Locale.ROOT));
+            return l == null ? Collections.emptyList() : Collections.unmodifiableList(l);
+        }
+    }
+
+    private static MenuCatalog shared;
+
+    private final File menuFile;
+    private volatile Snapshot snapshot;
+    private final List<java.util.function.Consumer<Diff>> listeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    static synchronized MenuCatalog shared() {
+        if (shared == null) shared = new MenuCatalog(new File("menu.txt"));
+        return shared;
+    }
+
+    MenuCatalog(File menuFile) {
+        this.menuFile = menuFile;
+    }
+
+    File file() {
+        return menuFile;
+    }
+
+    // Listeners run on the EDT with the rows that changed whenever a new snapshot replaces an old one.
+    void addListener(java.util.function.Consumer<Diff> l) {
+        listeners.add(l);
+    }
+
+    void removeListener(java.util.function.Consumer<Diff> l) {
+        listeners.remove(l);
+    }
+
+    private void publish(Snapshot before, Snapshot after) {
+        if (before == null || listeners.isEmpty()) return;
+        Diff d = Diff.between(before, after);
+        if (d.isEmpty()) return;
+        SwingUtilities.invokeLater(() -> {
+            for (java.util.function.Consumer<Diff> l : listeners) l.accept(d);
+        });
+    }
+
+    // The current menu; re-parses menu.txt only if it changed on disk since the last parse.
+    Snapshot current() {
+        Snapshot s = snapshot;
+        if (s != null && s.modified == -1) return s; // our own save is still being written
+        long modified = menuFile.lastModified();
+        long length = menuFile.length();
+        if (s != null && s.modified == modified && s.length == length) return s;
+        synchronized (this) {
+            s = snapshot;
+            if (s == null || (s.modified != -1 && (s.modified != modified || s.length != length))) {
+                Snapshot before = s;
+                s = parse();
+                snapshot = s;
+                publish(before, s);
+            }
+            return s;
+        }
+    }
+
+    // Replace the menu: readers see the new items immediately, the file is rewritten on the write lane.
+    CompletableFuture<Void> save(List<Item> items) {
+        List<String> lines = new ArrayList<>();
+        for (Item it : items) lines.add(it.toLine());
+        synchronized (this) {
+            Snapshot before = snapshot;
+            snapshot = new Snapshot(items, -1, -1);
+            publish(before, snapshot);
+        }
+        return DataAccess.write(() -> {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(menuFile))) {
+                for (String l : lines) {
+                    bw.write(l);
+                    bw.newLine();
+                }
+            }
+            synchronized (this) {
+                // remember the file state we wrote so current() does not re-parse our own save
+                if (snapshot != null && snapshot.modified == -1) {
+                    snapshot = new Snapshot(snapshot.items, menuFile.lastModified(), menuFile.length());
+                }
+            }
+        });
+    }
+
+    private Snapshot parse() {
+        long modified = menuFile.lastModified();
+        long length = menuFile.length();
+        List<Item> items = new ArrayList<>();
+        if (menuFile.exists()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(menuFile))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] parts = line.split(",");
+                    if (parts.length == 3) {
+                        items.add(new Item(parts[0], parts[1], parts[2]));
+                    }
+                }
+            } catch (IOException e) {
+                Metrics.failure("MenuCatalog", e);
+            }
+        }
+        return new Snapshot(items, modified, length);
+    }
+}
@@ -0,0 +1,263 @@
+package billgenerator;
+
+import javax.swing.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- METRICS (lock-free counters and latency histograms for the hot paths) ----------------
+// Recording is a few atomic adds, no locks and no allocation, so it stays on in production. Histograms are
+// log-linear like HdrHistogram: 256 linear sub-buckets per power of two keep every reported value within
+// 1% of the true one from 1 ns up to hours. The Diagnostics tab reads live snapshots; startReporting()
+// appends per-interval deltas to a rolling metrics.log.
+final class Metrics {
+    private static final int SUB_BITS = 8;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int HALF = SUB >> 1;
+    private static final long MAX_VALUE = (1L << 44) - 1; // ~4.9 hours in ns
+    private static final int BUCKETS = (44 - SUB_BITS + 1) * HALF + SUB;
+
+    private static final java.util.concurrent.ConcurrentSkipListMap<String, Histogram> histograms = new java.util.concurrent.ConcurrentSkipListMap<>();
+    private static final java.util.concurrent.ConcurrentSkipListMap<String, java.util.concurrent.atomic.LongAdder> counters = new java.util.concurrent.ConcurrentSkipListMap<>();
+    private static final ArrayDeque<String> recentFailures = new ArrayDeque<>();
+    private static final int KEEP_FAILURES = 50;
+
+    // checkout: end to end, then the parts a slow one can be blamed on
+    static final Histogram CHECKOUT = histogram("checkout.total");
+    static final Histogram CHECKOUT_EDT = histogram("checkout.edt.delay");       // commit -> EDT handler
+    static final Histogram JOURNAL_WRITE = histogram("journal.write");           // encode + write per batch
+    static final Histogram JOURNAL_FSYNC = histogram("journal.fsync");
+    static final Histogram JOURNAL_BATCH = count("journal.batch.orders");
+    static final Histogram PROJECTION_APPEND = histogram("projection.append");   // formatting into buffers
+    static final Histogram PROJECTION_FLUSH = histogram("projection.flush");     // buffers -> files
+    static final Histogram NOTIFICATION_WRITE = histogram("notifications.write");
+    static final Histogram REPORT = histogram("analytics.report");               // all reports, one pass
+    static final Histogram CHART_DATA = histogram("analytics.chart.data");
+    static final Histogram CHART_SHOW = histogram("analytics.chart.show");       // EDT: series + summary
+    static final Histogram CHART_RENDER = histogram("chart.render");             // redraw of the cached image
+    static final Histogram CHART_PAINT = histogram("chart.paint");
+    static final Histogram EDT_LAG = histogram("edt.lag");                       // invokeLater -> run
+    static final Histogram ADMIN_OPEN = histogram("ui.admin.open");             // admin login -> window shown
+    static final Histogram TAB_BUILD = histogram("ui.tab.build");                // EDT: first selection of a tab
+
+    static final class Histogram {
+        final String name;
+        final boolean nanos; // false: plain values (sizes, counts)
+        private final java.util.concurrent.atomic.AtomicLongArray buckets = new java.util.concurrent.atomic.AtomicLongArray(BUCKETS);
+        private final java.util.concurrent.atomic.LongAdder count = new java.util.concurrent.atomic.LongAdder();
+        private final java.util.concurrent.atomic.LongAdder sum = new java.util.concurrent.atomic.LongAdder();
+
+        private Histogram(String name, boolean nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+        void record(long value) {
+            long v = Math.max(0, Math.min(MAX_VALUE, value));
+            buckets.incrementAndGet(index(v));
+            count.increment();
+            sum.add(v);
+        }
+
+        void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        Snapshot snapshot() {
+            long[] b = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) b[i] = buckets.get(i);
+            return new Snapshot(name, nanos, b, count.sum(), sum.sum());
+        }
+    }
+
+    // a copy of a histogram at one moment; minus() gives the activity between two of them
+    static final class Snapshot {
+        final String name;
+        final boolean nanos;
+        final long count;
+        final long sum;
+        private final long[] buckets;
+
+        Snapshot(String name, boolean nanos, long[] buckets, long count, long sum) {
+            this.name = name;
+            this.nanos = nanos;
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        Snapshot minus(Snapshot before) {
+            if (before == null) return this;
+            long[] b = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) b[i] = buckets[i] - before.buckets[i];
+            return new Snapshot(name, nanos, b, count - before.count, sum - before.sum);
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // highest value that falls in the same bucket as the p-th recorded value
+        long percentile(double p) {
+            long total = 0;
+            for (long c : buckets) total += c;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        long max() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (buckets[i] != 0) return upperBound(i);
+            }
+            return 0;
+        }
+    }
+
+    static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, true));
+    }
+
+    static Histogram count(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, false));
+    }
+
+    static java.util.concurrent.atomic.LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new java.util.concurrent.atomic.LongAdder());
+    }
+
+    static List<Snapshot> histogramSnapshots() {
+        List<Snapshot> out = new ArrayList<>(histograms.size());
+        for (Histogram h : histograms.values()) out.add(h.snapshot());
+        return out;
+    }
+
+    static Map<String, Long> counterValues() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Map.Entry<String, java.util.concurrent.atomic.LongAdder> e : counters.entrySet()) out.put(e.getKey(), e.getValue().sum());
+        return out;
+    }
+
+    // Count a failure under errors.<where>, keep it for the Diagnostics tab, and still print the trace.
+    static void failure(String where, Throwable e) {
+        counter("errors." + where).increment();
+        String line = LocalDateTime.now().withNano(0) + " " + where + ": " + e;
+        synchronized (recentFailures) {
+            if (recentFailures.size() == KEEP_FAILURES) recentFailures.removeFirst();
+            recentFailures.addLast(line);
+        }
+        e.printStackTrace();
+    }
+
+    // newest first
+    static List<String> recentFailures() {
+        synchronized (recentFailures) {
+            List<String> out = new ArrayList<>(recentFailures);
+            Collections.reverse(out);
+            return out;
+        }
+    }
+
+    static String format(Snapshot s, long v) {
+        return s.nanos ? String.format(Locale.ROOT, "%.3f", v / 1e6) : String.valueOf(v);
+    }
+
+    private static int index(long v) {
+        if (v < SUB) return (int) v;
+        int shift = 64 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return shift * HALF + (int) (v >>> shift);
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB) return index;
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    // ---- background: EDT probe and rolling metrics file ----
+
+    private static java.util.concurrent.ScheduledExecutorService timer;
+
+    private static synchronized java.util.concurrent.ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return timer;
+    }
+
+    // how long the EDT takes to pick up a posted task; sampled 5 times a second
+    static void startEdtProbe() {
+        timer().scheduleAtFixedRate(() -> {
+            long posted = System.nanoTime();
+            SwingUtilities.invokeLater(() -> EDT_LAG.recordSince(posted));
+        }, 200, 200, TimeUnit.MILLISECONDS);
+    }
+
+    // Every -Dpos.metrics.interval seconds (default 60) append what happened in that interval to the file;
+    // it rolls to .1, .2, .3 once it passes 5 MB.
+    static void startReporting(File file) {
+        long interval = Math.max(1, Long.getLong("pos.metrics.interval", 60));
+        Map<String, Snapshot> last = new HashMap<>();
+        Map<String, Long> lastCounters = new HashMap<>();
+        Runnable dump = () -> {
+            try {
+                writeInterval(file, interval, last, lastCounters);
+            } catch (IOException e) {
+                e.printStackTrace(); // not failure(): a broken metrics file must not feed itself
+            }
+        };
+        timer().scheduleAtFixedRate(dump, interval, interval, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(dump, "metrics-shutdown"));
+    }
+
+    private static synchronized void writeInterval(File file, long interval, Map<String, Snapshot> last,
+                                                   Map<String, Long> lastCounters) throws IOException {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("# ").append(LocalDateTime.now().withNano(0)).append(" interval=").append(interval).append("s\n");
+        boolean any = false;
+        for (Snapshot now : histogramSnapshots()) {
+            Snapshot d = now.minus(last.put(now.name, now));
+            if (d.count == 0) continue;
+            any = true;
+            sb.append(d.name).append(" count=").append(d.count)
+                    .append(" mean=").append(format(d, Math.round(d.mean())))
+                    .append(" p50=").append(format(d, d.percentile(0.50)))
+                    .append(" p99=").append(format(d, d.percentile(0.99)))
+                    .append(" p999=").append(format(d, d.percentile(0.999)))
+                    .append(" max=").append(format(d, d.max()))
+                    .append(d.nanos ? " ms\n" : "\n");
+        }
+        for (Map.Entry<String, Long> c : counterValues().entrySet()) {
+            Long before = lastCounters.put(c.getKey(), c.getValue());
+            long delta = c.getValue() - (before == null ? 0 : before);
+            if (delta == 0) continue;
+            any = true;
+            sb.append(c.getKey()).append(" +").append(delta).append(" total=").append(c.getValue()).append('\n');
+        }
+        if (!any) return;
+        if (file.length() > 5L * 1024 * 1024) {
+            for (int i = 3; i >= 1; i--) {
+                File from = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+                File to = new File(file.getPath() + "." + i);
+                to.delete();
+                from.renameTo(to);
+            }
+        }
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            w.append(sb);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package billgenerator;
+
+// ---------------- MONEY (fixed-point amounts in long cents) ----------------
+// Prices, totals and every amount written to the order files are whole cents in a long, so sums never
+// drift. Formatting appends digits straight into the caller's (reusable) builder and parsing reads the
+// text in place; neither goes through double or String.format.
+final class Money {
+    static final long INVALID = Long.MIN_VALUE;
+
+    private Money() {
+    }
+
+    // "12", "12.5", " 7.00 ", "-3.25" -> cents, a third decimal rounds half up; INVALID if not a number
+    static long parse(CharSequence s) {
+        int i = 0, e = s.length();
+        while (i < e && s.charAt(i) == ' ') i++;
+        while (e > i && s.charAt(e - 1) == ' ') e--;
+        boolean neg = i < e && s.charAt(i) == '-';
+        if (neg || i < e && s.charAt(i) == '+') i++;
+        long whole = 0;
+        int digits = 0;
+        for (; i < e && s.charAt(i) != '.'; i++, digits++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9 || digits > 15) return parseSlow(s);
+            whole = whole * 10 + d;
+        }
+        long frac = 0;
+        int fracDigits = 0;
+        boolean roundUp = false;
+        if (i < e) {
+            for (i++; i < e; i++, fracDigits++) {
+                int d = s.charAt(i) - '0';
+                if (d < 0 || d > 9) return parseSlow(s);
+                if (fracDigits < 2) frac = frac * 10 + d;
+                else if (fracDigits == 2) roundUp = d >= 5;
+            }
+        }
+        if (digits == 0 && fracDigits == 0) return INVALID;
+        if (fracDigits == 1) frac *= 10;
+        long cents = whole * 100 + frac + (roundUp ? 1 : 0);
+        return neg ? -cents : cents;
+    }
+
+    // exponents and other forms Double accepts; rare enough that allocating is fine
+    private static long parseSlow(CharSequence s) {
+        try {
+            double v = Double.parseDouble(s.toString().trim());
+            return Double.isFinite(v) ? Math.round(v * 100.0) : INVALID;
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    // 1234.50
+    static StringBuilder append(StringBuilder sb, long cents) {
+        return append(sb, cents, false);
+    }
+
+    // 1,234.50
+    static StringBuilder appendGrouped(StringBuilder sb, long cents) {
+        return append(sb, cents, true);
+    }
+
+    static String format(long cents) {
+        return append(new StringBuilder(24), cents).toString();
+    }
+
+    private static StringBuilder append(StringBuilder sb, long cents, boolean grouped) {
+        if (cents < 0) {
+            sb.append('-');
+            if (cents == Long.MIN_VALUE) return sb.append("92233720368547758.08");
+            cents = -cents;
+        }
+        int start = sb.length();
+        sb.append(cents / 100);
+        if (grouped) {
+            for (int at = sb.length() - 3; at > start; at -= 3) sb.insert(at, ',');
+        }
+        int frac = (int) (cents % 100);
+        return sb.append('.').append((char) ('0' + frac / 10)).append((char) ('0' + frac % 10));
+    }
+}
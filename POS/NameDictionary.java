@@ -0,0 +1,86 @@
+package billgenerator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// ---------------- PRIMITIVE AGGREGATION (dictionary ids, int->long sums, top-N) ----------------
+// Analytics folds millions of rows into a few hundred names. Names are turned into dense int ids once
+// (NameDictionary), sums live in primitive open-addressing maps (IntLongMap) and rankings come from a
+// bounded primitive heap (TopN), so the per-row work allocates nothing and boxes nothing.
+
+// name <-> dense id (0, 1, 2, ... in order of first appearance), looked up by UTF-8 bytes
+final class NameDictionary {
+    private byte[][] keys = new byte[64][]; // by slot
+    private int[] slotIds = new int[64];    // by slot
+    private String[] names = new String[32]; // by id
+    private int size;
+
+    int id(String name) {
+        byte[] b = name.getBytes(StandardCharsets.UTF_8);
+        return id(ByteBuffer.wrap(b), 0, b.length);
+    }
+
+    int id(ByteBuffer buf, int s, int e) {
+        int h = 0;
+        for (int k = s; k < e; k++) h = 31 * h + buf.get(k);
+        int mask = keys.length - 1;
+        int slot = mix(h) & mask;
+        for (; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(keys[slot], buf, s, e)) return slotIds[slot];
+        }
+        byte[] key = new byte[e - s];
+        buf.get(s, key, 0, key.length);
+        int id = size++;
+        if (id == names.length) names = Arrays.copyOf(names, id * 2);
+        names[id] = new String(key, StandardCharsets.UTF_8);
+        if (size * 2 > keys.length) {
+            grow();
+        } else {
+            keys[slot] = key;
+            slotIds[slot] = id;
+        }
+        return id;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // id -> name snapshot
+    String[] names() {
+        return Arrays.copyOf(names, size);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buf, int s, int e) {
+        if (key.length != e - s) return false;
+        for (int k = 0; k < key.length; k++) {
+            if (key[k] != buf.get(s + k)) return false;
+        }
+        return true;
+    }
+
+    // rebuild the table from the names (includes the id just added)
+    private void grow() {
+        keys = new byte[keys.length * 2][];
+        slotIds = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int id = 0; id < size; id++) {
+            byte[] key = names[id].getBytes(StandardCharsets.UTF_8);
+            int h = 0;
+            for (byte b : key) h = 31 * h + b;
+            int slot = mix(h) & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            slotIds[slot] = id;
+        }
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,403 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// ---------------- NOTIFICATION INBOX (indexed, per-recipient, bounded) ----------------
+// The text log stays human readable: one "<seq> <recipient hash, hex> [time] message" line per
+// notification, so the log alone says who may see each line. Next to it:
+//   <log>.idx      int magic, int version, long text bytes covered, then 28-byte entries:
+//                  long seq, long offset, int length, long recipient hash (0 = everyone)
+// The index is derived data: lines it does not cover yet (a writer died between the two writes, or a
+// compaction was cut short) are re-indexed from their own seq and recipient, never as broadcasts.
+//   <log>.cursors  recipient=last read seq
+//   <log>.lock     cross-process lock for appends, cursor updates and compaction
+// Reads walk the index backwards from the newest entry, so a page costs O(page) positioned reads.
+// Once the live log holds more than RETAIN + RETAIN/2 entries, everything but the newest RETAIN is
+// moved to <log>.archive.txt; the live log, and with it every read, stays bounded.
+class NotificationInbox {
+    private static final int MAGIC = 0x504F534E; // "POSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY = 28;
+    static final int RETAIN = 2000;
+
+    static final class Entry {
+        final long seq;
+        final String text;
+
+        Entry(long seq, String text) {
+            this.seq = seq;
+            this.text = text;
+        }
+    }
+
+    static final class Page {
+        final List<Entry> entries; // newest first
+        final boolean hasMore;
+
+        Page(List<Entry> entries, boolean hasMore) {
+            this.entries = entries;
+            this.hasMore = hasMore;
+        }
+    }
+
+    private final File logFile;
+    private final File indexFile;
+    private final File cursorFile;
+    private final File lockFile;
+    private final File archiveFile;
+
+    static final File ADMIN_LOG = new File("admin_notifications.txt");
+    static final File CUSTOMER_LOG = new File("customer_notifications.txt");
+
+    NotificationInbox(File logFile) {
+        this.logFile = logFile;
+        String base = logFile.getPath();
+        String stem = base.endsWith(".txt") ? base.substring(0, base.length() - 4) : base;
+        this.indexFile = new File(base + ".idx");
+        this.cursorFile = new File(base + ".cursors");
+        this.lockFile = new File(base + ".lock");
+        this.archiveFile = new File(stem + ".archive.txt");
+    }
+
+    // everything this inbox keeps on disk
+    List<File> files() {
+        return Arrays.asList(logFile, indexFile, cursorFile, lockFile, archiveFile);
+    }
+
+    // handles kept open by the writer between batches (see NotificationCenter)
+    private FileChannel writeLock;
+    private FileChannel writeIdx;
+    private FileChannel writeLog;
+
+    // recipient null = broadcast to everyone reading this log
+    void append(String recipient, String line) throws IOException {
+        appendAll(Collections.singletonList(recipient), Collections.singletonList(line));
+    }
+
+    // one log write and one index write for the whole batch
+    synchronized void appendAll(List<String> recipients, List<String> lines) throws IOException {
+        if (writeLock == null) writeLock = lockChannel();
+        if (writeIdx == null) writeIdx = openIndex();
+        if (writeLog == null) writeLog = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        java.nio.channels.FileLock lock = null;
+        try {
+            lock = writeLock.lock();
+            FileChannel idx = writeIdx;
+            catchUp(idx);
+            long seq = lastSeq(idx);
+            long start = writeLog.size();
+            ByteArrayOutputStream text = new ByteArrayOutputStream(lines.size() * 80);
+            ByteBuffer entries = ByteBuffer.allocate(lines.size() * ENTRY);
+            for (int i = 0; i < lines.size(); i++) {
+                long who = hash(recipients.get(i));
+                byte[] bytes = (++seq + " " + Long.toHexString(who) + " " + lines.get(i) + System.lineSeparator())
+                        .getBytes(StandardCharsets.UTF_8);
+                entries.putLong(seq).putLong(start + text.size()).putInt(bytes.length).putLong(who);
+                text.write(bytes, 0, bytes.length);
+            }
+            ByteBuffer buf = ByteBuffer.wrap(text.toByteArray());
+            while (buf.hasRemaining()) writeLog.write(buf, start + buf.position());
+            entries.flip();
+            long at = idx.size();
+            while (entries.hasRemaining()) idx.write(entries, at + entries.position());
+            writeCovered(idx, start + text.size());
+            if (count(idx) > RETAIN + RETAIN / 2) {
+                compact(idx);
+                writeLog.close(); // the log file was replaced
+                writeLog = null;
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } finally {
+            if (lock != null && lock.isValid()) lock.release();
+        }
+    }
+
+    synchronized void close() {
+        for (FileChannel ch : new FileChannel[]{writeLog, writeIdx, writeLock}) {
+            try {
+                if (ch != null) ch.close();
+            } catch (IOException e) {
+                Metrics.failure("NotificationInbox", e);
+            }
+        }
+        writeLog = writeIdx = writeLock = null;
+    }
+
+    // up to limit entries visible to recipient with seq < beforeSeq, newest first
+    synchronized Page page(String recipient, long beforeSeq, int limit) throws IOException {
+        List<long[]> hits = new ArrayList<>(); // {seq, offset, length}
+        boolean more = false;
+        try (FileChannel idx = openIndex()) {
+            catchUpIfNeeded(idx);
+            long want = hash(recipient);
+            long n = count(idx);
+            ByteBuffer chunk = ByteBuffer.allocate(ENTRY * 256);
+            for (long end = n; end > 0 && !more; ) {
+                long start = Math.max(0, end - 256);
+                chunk.clear().limit((int) ((end - start) * ENTRY));
+                readFully(idx, chunk, HEADER_SIZE + start * ENTRY);
+                for (long i = end - 1; i >= start; i--) {
+                    int at = (int) ((i - start) * ENTRY);
+                    long seq = chunk.getLong(at);
+                    long who = chunk.getLong(at + 20);
+                    if (seq >= beforeSeq || (who != 0 && who != want)) continue;
+                    if (hits.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    hits.add(new long[]{seq, chunk.getLong(at + 8), chunk.getInt(at + 16)});
+                }
+                end = start;
+            }
+        }
+        List<Entry> entries = new ArrayList<>(hits.size());
+        if (!hits.isEmpty()) {
+            try (FileChannel log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                for (long[] h : hits) {
+                    ByteBuffer b = ByteBuffer.allocate((int) h[2]);
+                    readFully(log, b, h[1]);
+                    int skip = headerLength(b.array(), b.limit());
+                    entries.add(new Entry(h[0], new String(b.array(), skip, b.limit() - skip, StandardCharsets.UTF_8).trim()));
+                }
+            }
+        }
+        return new Page(entries, more);
+    }
+
+    // entries visible to recipient newer than its read cursor (bounded by the retained log)
+    synchronized int unreadCount(String recipient) throws IOException {
+        long cursor = cursor(recipient);
+        long want = hash(recipient);
+        int unread = 0;
+        try (FileChannel idx = openIndex()) {
+            catchUpIfNeeded(idx);
+            long n = count(idx);
+            ByteBuffer chunk = ByteBuffer.allocate(ENTRY * 256);
+            for (long end = n; end > 0; ) {
+                long start = Math.max(0, end - 256);
+                chunk.clear().limit((int) ((end - start) * ENTRY));
+                readFully(idx, chunk, HEADER_SIZE + start * ENTRY);
+                for (long i = end - 1; i >= start; i--) {
+                    int at = (int) ((i - start) * ENTRY);
+                    if (chunk.getLong(at) <= cursor) return unread;
+                    long who = chunk.getLong(at + 20);
+                    if (who == 0 || who == want) unread++;
+                }
+                end = start;
+            }
+        }
+        return unread;
+    }
+
+    synchronized void markRead(String recipient, long seq) throws IOException {
+        try (FileChannel lockCh = lockChannel()) {
+            java.nio.channels.FileLock lock = lockCh.lock();
+            try {
+                Properties p = loadCursors();
+                String key = recipient == null ? "" : recipient;
+                long prev = Long.parseLong(p.getProperty(key, "0"));
+                if (seq <= prev) return;
+                p.setProperty(key, Long.toString(seq));
+                try (OutputStream out = new FileOutputStream(cursorFile)) {
+                    p.store(out, "last read notification per recipient");
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private long cursor(String recipient) throws IOException {
+        try {
+            return Long.parseLong(loadCursors().getProperty(recipient == null ? "" : recipient, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private Properties loadCursors() throws IOException {
+        Properties p = new Properties();
+        if (cursorFile.exists()) {
+            try (InputStream in = new FileInputStream(cursorFile)) {
+                p.load(in);
+            }
+        }
+        return p;
+    }
+
+    private FileChannel lockChannel() throws IOException {
+        return FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private FileChannel openIndex() throws IOException {
+        FileChannel idx = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (idx.size() < HEADER_SIZE) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(0);
+            h.flip();
+            idx.write(h, 0);
+        }
+        return idx;
+    }
+
+    private static long count(FileChannel idx) throws IOException {
+        return (idx.size() - HEADER_SIZE) / ENTRY;
+    }
+
+    private static long lastSeq(FileChannel idx) throws IOException {
+        long n = count(idx);
+        if (n == 0) return 0;
+        ByteBuffer b = ByteBuffer.allocate(8);
+        readFully(idx, b, HEADER_SIZE + (n - 1) * ENTRY);
+        return b.getLong(0);
+    }
+
+    private static long covered(FileChannel idx) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(8);
+        readFully(idx, b, 8);
+        return b.getLong(0);
+    }
+
+    private static void writeCovered(FileChannel idx, long bytes) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(8).putLong(0, bytes);
+        idx.write(b, 8);
+    }
+
+    private void catchUpIfNeeded(FileChannel idx) throws IOException {
+        if (covered(idx) == (logFile.exists() ? logFile.length() : 0)) return;
+        try (FileChannel lockCh = lockChannel()) {
+            java.nio.channels.FileLock lock = lockCh.lock();
+            try {
+                catchUp(idx);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    // index the lines written after the index was; a line without a "<seq> <hash> " header (older versions,
+    // hand edits) stays in the log but is never shown, since nothing says who it was meant for
+    private void catchUp(FileChannel idx) throws IOException {
+        long size = logFile.exists() ? logFile.length() : 0;
+        long from = covered(idx);
+        if (from > size) { // log was replaced behind our back: start over
+            idx.truncate(HEADER_SIZE);
+            from = 0;
+        }
+        if (from == size) return;
+        long last = lastSeq(idx);
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(logFile))) {
+            in.skipNBytes(from);
+            long pos = from, lineStart = from;
+            ByteBuffer e = ByteBuffer.allocate(ENTRY);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            long[] header = new long[2];
+            int c;
+            while (pos < size && (c = in.read()) != -1) {
+                pos++;
+                if (c != '\n') {
+                    if (line.size() < 64) line.write(c); // the header is all we need
+                    continue;
+                }
+                byte[] b = line.toByteArray();
+                line.reset();
+                // seqs only grow, so a header at or below the last indexed one is not a real entry
+                if (headerLength(b, b.length, header) > 0 && header[0] > last) {
+                    last = header[0];
+                    e.clear();
+                    e.putLong(last).putLong(lineStart).putInt((int) (pos - lineStart)).putLong(header[1]).flip();
+                    idx.write(e, idx.size());
+                } else {
+                    Metrics.counter("notifications.unindexed").increment();
+                }
+                lineStart = pos;
+            }
+            writeCovered(idx, lineStart);
+        }
+    }
+
+    private static int headerLength(byte[] line, int len) {
+        return Math.max(0, headerLength(line, len, new long[2]));
+    }
+
+    // length of the "<seq> <hash> " prefix, with {seq, hash} in out; -1 if the line has none
+    private static int headerLength(byte[] line, int len, long[] out) {
+        int i = 0;
+        long seq = 0;
+        for (; i < len && line[i] >= '0' && line[i] <= '9'; i++) {
+            if (i >= 18) return -1;
+            seq = seq * 10 + (line[i] - '0');
+        }
+        if (i == 0 || i >= len || line[i] != ' ') return -1;
+        int start = ++i;
+        long who = 0;
+        for (; i < len && line[i] != ' '; i++) {
+            int d = Character.digit(line[i], 16);
+            if (d < 0 || i - start >= 16) return -1;
+            who = (who << 4) | d;
+        }
+        if (i == start || i >= len) return -1;
+        out[0] = seq;
+        out[1] = who;
+        return i + 1;
+    }
+
+    // keep the newest RETAIN entries live, append the rest of the text to the archive
+    private void compact(FileChannel idx) throws IOException {
+        long n = count(idx);
+        long drop = n - RETAIN;
+        ByteBuffer first = ByteBuffer.allocate(ENTRY);
+        readFully(idx, first, HEADER_SIZE + drop * ENTRY);
+        long cut = first.getLong(8);
+
+        try (FileChannel log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+             FileChannel archive = FileChannel.open(archiveFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long done = 0;
+            while (done < cut) done += log.transferTo(done, cut - done, archive);
+
+            File tmpLog = new File(logFile.getPath() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmpLog.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long len = log.size() - cut;
+                long copied = 0;
+                while (copied < len) copied += log.transferTo(cut + copied, len - copied, out);
+            }
+            java.nio.file.Files.move(tmpLog.toPath(), logFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // shift the kept entries down and rebase their offsets
+        ByteBuffer kept = ByteBuffer.allocate(RETAIN * ENTRY);
+        readFully(idx, kept, HEADER_SIZE + drop * ENTRY);
+        for (int i = 0; i < RETAIN; i++) {
+            int at = i * ENTRY + 8;
+            kept.putLong(at, kept.getLong(at) - cut);
+        }
+        idx.write(kept, HEADER_SIZE);
+        idx.truncate(HEADER_SIZE + (long) RETAIN * ENTRY);
+        writeCovered(idx, logFile.length());
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, pos + b.position());
+            if (n < 0) break;
+        }
+        b.flip();
+    }
+
+    private static long hash(String recipient) {
+        if (recipient == null) return 0;
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (byte x : recipient.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (x & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,184 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// ---------------- ORDER FILES PROJECTION (legacy text files fed by the journal) ----------------
+// orders.csv:      datetime,customer,total,order_id
+// order_items.csv: datetime,item,qty,line_total,order_id
+// The trailing order_id column is new; readers that only look at the first 3/4 fields keep working.
+class OrderFilesProjection {
+    private final File salesFile;
+    private final File transactionsFile;
+    private final File ordersFile;
+    private final File orderItemsFile;
+
+    private static final int NEWLINE_BYTES = System.lineSeparator().length();
+
+    private final OrderItemsIndex itemsIndex;
+    private final CustomerOrderIndex customerIndex;
+
+    private BufferedWriter sales, transactions, orders, orderItems;
+    private long lastOrdersId, lastItemsId;
+    private long itemsPos;  // byte length of order_items.csv including buffered rows
+    private long ordersPos; // byte length of orders.csv including buffered rows
+
+    OrderFilesProjection(File salesFile, File transactionsFile, File ordersFile, File orderItemsFile) {
+        this.salesFile = salesFile;
+        this.transactionsFile = transactionsFile;
+        this.ordersFile = ordersFile;
+        this.orderItemsFile = orderItemsFile;
+        this.itemsIndex = OrderItemsIndex.of(orderItemsFile);
+        this.customerIndex = CustomerOrderIndex.of(ordersFile);
+    }
+
+    void open() throws IOException {
+        lastOrdersId = lastIdColumn(ordersFile, 3);
+        lastItemsId = lastIdColumn(orderItemsFile, 4);
+        itemsIndex.catchUp();
+        itemsPos = orderItemsFile.length();
+        customerIndex.catchUp();
+        ordersPos = ordersFile.length();
+        sales = openAppend(salesFile);
+        transactions = openAppend(transactionsFile);
+        orders = openAppend(ordersFile);
+        orderItems = openAppend(orderItemsFile);
+    }
+
+    long lastProjectedId() {
+        return Math.min(lastOrdersId, lastItemsId);
+    }
+
+    long maxProjectedId() {
+        return Math.max(lastOrdersId, lastItemsId);
+    }
+
+    // item rows are written before the order row so an order never shows up without its items
+    void append(List<OrderRecord> batch) throws IOException {
+        for (OrderRecord r : batch) {
+            String now = r.createdAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            long total = r.totalCents();
+            if (r.orderId > lastItemsId) {
+                long start = itemsPos;
+                for (OrderRecord.Line l : r.lines) {
+                    row.setLength(0);
+                    row.append(now).append(',').append(escape(l.item)).append(',').append(l.qty).append(',');
+                    Money.append(row, l.lineCents()).append(',').append(r.orderId);
+                    itemsPos += writeLine(orderItems, row);
+                }
+                itemsIndex.put(r.orderId, start, (int) (itemsPos - start), r.lines.size());
+                lastItemsId = r.orderId;
+            }
+            if (r.orderId > lastOrdersId) {
+                row.setLength(0);
+                Money.append(row.append(r.customer).append(','), total);
+                writeLine(sales, row);
+                row.setLength(0);
+                writeLine(transactions, r.appendReceipt(row));
+                row.setLength(0);
+                row.append(now).append(',').append(escape(r.customer)).append(',');
+                Money.append(row, total).append(',').append(r.orderId);
+                int len = writeLine(orders, row);
+                customerIndex.add(r.customer, ordersPos, len);
+                ordersPos += len;
+                lastOrdersId = r.orderId;
+            }
+        }
+    }
+
+    // rows are built in one reused builder and copied out through one reused char buffer
+    private final StringBuilder row = new StringBuilder(256);
+    private char[] chars = new char[256];
+
+    // writes sb plus a line separator, returns the bytes that adds to the file
+    private int writeLine(BufferedWriter w, StringBuilder sb) throws IOException {
+        int n = sb.length();
+        if (chars.length < n) chars = new char[Math.max(n, chars.length * 2)];
+        sb.getChars(0, n, chars, 0);
+        w.write(chars, 0, n);
+        w.newLine();
+        return utf8Length(sb) + NEWLINE_BYTES;
+    }
+
+    void flush() throws IOException {
+        orderItems.flush();
+        itemsIndex.markCovered(itemsPos);
+        sales.flush();
+        transactions.flush();
+        orders.flush();
+        customerIndex.markCovered(ordersPos);
+    }
+
+    void close() {
+        for (BufferedWriter w : new BufferedWriter[]{orderItems, sales, transactions, orders}) {
+            if (w == null) continue;
+            try {
+                w.close();
+            } catch (IOException e) {
+                Metrics.failure("OrderFilesProjection", e);
+            }
+        }
+    }
+
+    static String escape(String s) {
+        // minimal CSV escape for commas/quotes
+        String v = s.replace("\"", "\"\"");
+        if (v.contains(",") || v.contains("\"")) {
+            return "\"" + v + "\"";
+        }
+        return v;
+    }
+
+    static int utf8Length(CharSequence s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c)) { n += 4; i++; }
+            else n += 3;
+        }
+        return n;
+    }
+
+    private static BufferedWriter openAppend(File f) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, true), StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    // order id of the last row, read from the file tail; 0 if none (or a legacy row without id)
+    private static long lastIdColumn(File f, int column) throws IOException {
+        if (!f.exists() || f.length() == 0) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            long len = raf.length();
+            int n = (int) Math.min(len, 8192);
+            byte[] tail = new byte[n];
+            raf.seek(len - n);
+            raf.readFully(tail);
+            int end = n;
+            while (end > 0 && (tail[end - 1] == '\n' || tail[end - 1] == '\r')) end--;
+            int start = end;
+            while (start > 0 && tail[start - 1] != '\n') start--;
+            String last = new String(tail, start, end - start, StandardCharsets.UTF_8);
+            int idx = last.lastIndexOf(',');
+            if (idx < 0 || countFields(last) <= column) return 0;
+            try {
+                return Long.parseLong(last.substring(idx + 1).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    private static int countFields(String line) {
+        int n = 1;
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') inQuotes = !inQuotes;
+            else if (c == ',' && !inQuotes) n++;
+        }
+        return n;
+    }
+}
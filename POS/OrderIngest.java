@@ -0,0 +1,522 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- ORDER INGEST (one process owns the order files, the others submit over loopback) ----------------
+// The first process to take orders.journal.lock becomes the owner: it opens the order journal and serves
+// 127.0.0.1:PORT. Every other terminal on the machine connects there instead of writing the files itself,
+// so the journal and its text projections only ever have one writer. `DynamicGUI --ingest-daemon` runs an
+// owner without a window. If the owner goes away, clients elect a new one and resubmit their unanswered
+// orders with the same idempotency keys. Keys are stored inside the journal records, and the owner answers
+// any of the last KEEP_KEYS keys with the first commit's id instead of committing it twice, even after a crash.
+//
+// Protocol (big endian, every frame is int length + body):
+//   hello:    client and server both send int MAGIC, int VERSION
+//   submit:   byte SUBMIT, long requestId, long keyHi, long keyLo, long epochSecond, int nano,
+//             UTF customer, int lineCount, (UTF item, int qty, long unitCents)*
+//   reply:    byte OK|REJECTED|FAILED, long requestId, then long orderId (OK) or UTF message
+// Clients pipeline: they keep sending while replies are outstanding and match replies by requestId.
+final class OrderIngest {
+    static final int PORT = Integer.getInteger("pos.ingest.port", 47613); // 0 = never share, local only
+    static final File OWNER_LOCK = new File("orders.journal.lock");
+    private static final int MAGIC = 0x504F5349; // "POSI"
+    private static final int VERSION = 1;
+    private static final byte SUBMIT = 1;
+    private static final byte OK = 0, REJECTED = 1, FAILED = 2;
+    private static final int MAX_FRAME = 1 << 20;
+    private static final int MAX_BATCH = 256;
+    private static final long ELECTION_TIMEOUT_MS = 15_000;
+
+    // where orders go: the local journal (Owner) or the owner process (Client)
+    interface Backend {
+        CompletableFuture<OrderRecord> submit(long keyHi, long keyLo, OrderRecord order);
+    }
+
+    // the connection to the owner dropped before its reply arrived: the order may or may not be committed
+    static final class ConnectionLost extends IOException {
+        ConnectionLost(String msg) {
+            super(msg);
+        }
+    }
+
+    // Run an owner without UI until the process is killed.
+    static void runDaemon() throws IOException, InterruptedException {
+        Owner owner = Owner.tryOpen(PORT);
+        if (owner == null) throw new IOException("Another process already owns the order files");
+        if (!owner.serving) throw new IOException("Cannot listen on 127.0.0.1:" + PORT);
+        System.out.println("Order ingest daemon on 127.0.0.1:" + PORT);
+        Thread.currentThread().join();
+    }
+
+    // Find the owner or become it. Retries while another process holds the lock but is not answering yet.
+    static Backend resolve(int port) throws IOException {
+        long deadline = System.currentTimeMillis() + ELECTION_TIMEOUT_MS;
+        while (true) {
+            if (port > 0) {
+                Client c = Client.tryConnect(port);
+                if (c != null) return c;
+            }
+            Owner o = Owner.tryOpen(port);
+            if (o != null) return o;
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("The order files are owned by a process that does not answer on port " + port);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    // OrderService's backend: the current owner connection, re-elected and resubmitted on connection loss.
+    static final class Router implements Backend {
+        private static final int RESUBMITS = 3;
+        private static final java.util.concurrent.Executor RETRY = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "order-ingest-retry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private final int port;
+        private Backend current; // guarded by this
+
+        Router(int port) throws IOException {
+            this.port = port;
+            this.current = resolve(port);
+        }
+
+        @Override public CompletableFuture<OrderRecord> submit(long keyHi, long keyLo, OrderRecord order) {
+            return submit(keyHi, keyLo, order, RESUBMITS);
+        }
+
+        private CompletableFuture<OrderRecord> submit(long keyHi, long keyLo, OrderRecord order, int resubmits) {
+            Backend b;
+            try {
+                b = current();
+            } catch (IOException e) {
+                return failed(e);
+            }
+            return b.submit(keyHi, keyLo, order).handle((r, err) -> {
+                if (err == null) return CompletableFuture.completedFuture(r);
+                Throwable cause = err instanceof java.util.concurrent.CompletionException && err.getCause() != null ? err.getCause() : err;
+                if (cause instanceof ConnectionLost && resubmits > 0) {
+                    Metrics.counter("ingest.resubmits").increment();
+                    // re-election may block, so not on the connection thread that reported the loss
+                    return CompletableFuture.supplyAsync(() -> {
+                        dropIfCurrent(b);
+                        return submit(keyHi, keyLo, order, resubmits - 1);
+                    }, RETRY).thenCompose(f -> f);
+                }
+                return OrderIngest.<OrderRecord>failed(cause);
+            }).thenCompose(f -> f);
+        }
+
+        private synchronized Backend current() throws IOException {
+            if (current == null || (current instanceof Client && ((Client) current).broken)) current = resolve(port);
+            return current;
+        }
+
+        private synchronized void dropIfCurrent(Backend b) {
+            if (current == b) current = null;
+        }
+    }
+
+    // ---- owner side ----
+
+    static final class Owner implements Backend {
+        private static final int KEEP_KEYS = 1 << 16;
+        private static Owner shared;
+
+        private final OrderJournal journal;
+        private final FileChannel lockChannel;
+        private boolean serving = false; // set once in tryOpen
+        // idempotency key -> id of the commit it produced (pending until the journal answers)
+        private final LinkedHashMap<java.util.UUID, CompletableFuture<Long>> recent =
+                new LinkedHashMap<java.util.UUID, CompletableFuture<Long>>(1024, 0.75f) {
+                    @Override protected boolean removeEldestEntry(Map.Entry<java.util.UUID, CompletableFuture<Long>> e) {
+                        return size() > KEEP_KEYS;
+                    }
+                };
+
+        // null if another process holds the lock
+        static synchronized Owner tryOpen(int port) throws IOException {
+            if (shared != null) return shared;
+            FileChannel ch = FileChannel.open(OWNER_LOCK.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            java.nio.channels.FileLock lock;
+            try {
+                lock = ch.tryLock();
+            } catch (IOException e) {
+                ch.close();
+                throw e;
+            }
+            if (lock == null) {
+                ch.close();
+                return null;
+            }
+            // the lock lives as long as the channel, i.e. until this process exits
+            try {
+                shared = new Owner(OrderJournal.shared(), ch);
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+            if (port > 0) {
+                try {
+                    new Server(port, shared).start();
+                    shared.serving = true;
+                } catch (IOException e) {
+                    // still the owner: this process keeps working, other terminals cannot reach it
+                    Metrics.failure("OrderIngest", e);
+                }
+            }
+            return shared;
+        }
+
+        private Owner(OrderJournal journal, FileChannel lockChannel) throws IOException {
+            this.journal = journal;
+            this.lockChannel = lockChannel;
+            // keys travel inside the journal records, so the window is rebuilt from the journal's tail
+            journal.replay(Math.max(0, journal.lastOrderId() - KEEP_KEYS), r -> {
+                if (r.hasKey()) recent.put(new java.util.UUID(r.keyHi, r.keyLo), CompletableFuture.completedFuture(r.orderId));
+            });
+        }
+
+        @Override public CompletableFuture<OrderRecord> submit(long keyHi, long keyLo, OrderRecord order) {
+            if (keyHi == 0 && keyLo == 0) return journal.append(order);
+            java.util.UUID key = new java.util.UUID(keyHi, keyLo);
+            CompletableFuture<Long> id;
+            synchronized (recent) {
+                id = recent.get(key);
+                if (id == null) {
+                    id = new CompletableFuture<>();
+                    recent.put(key, id);
+                } else {
+                    return id.thenApply(order::withId);
+                }
+            }
+            CompletableFuture<Long> mine = id;
+            OrderRecord keyed = new OrderRecord(0, order.createdAt, order.customer, order.lines, keyHi, keyLo);
+            journal.append(keyed).whenComplete((r, err) -> {
+                if (err != null) {
+                    // nothing was committed: let a retry with the same key try again
+                    synchronized (recent) {
+                        recent.remove(key, mine);
+                    }
+                    mine.completeExceptionally(err);
+                    return;
+                }
+                mine.complete(r.orderId);
+            });
+            return mine.thenApply(order::withId);
+        }
+    }
+
+    private static final class Reply {
+        final byte status;
+        final long requestId;
+        final long orderId;
+        final String message;
+
+        Reply(byte status, long requestId, long orderId, String message) {
+            this.status = status;
+            this.requestId = requestId;
+            this.orderId = orderId;
+            this.message = message;
+        }
+    }
+
+    private static final Reply CLOSE = new Reply(FAILED, 0, 0, null);
+
+    static final class Server {
+        private final java.net.ServerSocket socket;
+        private final Owner owner;
+
+        Server(int port, Owner owner) throws IOException {
+            this.owner = owner;
+            this.socket = new java.net.ServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), port));
+        }
+
+        void start() {
+            Thread t = new Thread(this::acceptLoop, "order-ingest-accept");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    java.net.Socket s = socket.accept();
+                    s.setTcpNoDelay(true);
+                    Metrics.counter("ingest.connections").increment();
+                    Thread t = new Thread(() -> serve(s), "order-ingest-conn-" + s.getPort());
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    if (!socket.isClosed()) Metrics.failure("OrderIngest", e);
+                }
+            }
+        }
+
+        // reader: this thread; writer: a second thread that drains replies in batches with one flush each
+        private void serve(java.net.Socket s) {
+            LinkedBlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+            Thread writer = null;
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.flush();
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+                writer = new Thread(() -> writeReplies(s, out, replies), "order-ingest-reply-" + s.getPort());
+                writer.setDaemon(true);
+                writer.start();
+
+                byte[] frame = new byte[512];
+                while (true) {
+                    int len;
+                    try {
+                        len = in.readInt();
+                    } catch (EOFException e) {
+                        return;
+                    }
+                    if (len <= 0 || len > MAX_FRAME) return;
+                    if (frame.length < len) frame = new byte[Math.max(len, frame.length * 2)];
+                    in.readFully(frame, 0, len);
+                    DataInputStream b = new DataInputStream(new ByteArrayInputStream(frame, 0, len));
+                    if (b.readByte() != SUBMIT) return;
+                    long requestId = b.readLong();
+                    long keyHi = b.readLong(), keyLo = b.readLong();
+                    OrderRecord order = readOrder(b);
+                    Metrics.counter("ingest.submits").increment();
+                    String problem = order == null ? "Malformed order" : OrderService.validate(order);
+                    if (problem != null) {
+                        replies.add(new Reply(REJECTED, requestId, 0, problem));
+                        continue;
+                    }
+                    owner.submit(keyHi, keyLo, order).whenComplete((r, err) -> replies.add(err == null
+                            ? new Reply(OK, requestId, r.orderId, null)
+                            : new Reply(FAILED, requestId, 0, String.valueOf(err.getMessage()))));
+                }
+            } catch (IOException e) {
+                // client went away; replies still queued for it are dropped with the socket
+            } finally {
+                replies.add(CLOSE);
+                if (writer == null) closeQuietly(s);
+            }
+        }
+
+        private void writeReplies(java.net.Socket s, DataOutputStream out, LinkedBlockingQueue<Reply> replies) {
+            List<Reply> batch = new ArrayList<>(MAX_BATCH);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            DataOutputStream b = new DataOutputStream(body);
+            try {
+                while (true) {
+                    batch.clear();
+                    batch.add(replies.take());
+                    replies.drainTo(batch, MAX_BATCH - 1);
+                    for (Reply r : batch) {
+                        if (r == CLOSE) return;
+                        body.reset();
+                        b.writeByte(r.status);
+                        b.writeLong(r.requestId);
+                        if (r.status == OK) b.writeLong(r.orderId);
+                        else b.writeUTF(r.message);
+                        out.writeInt(body.size());
+                        body.writeTo(out);
+                    }
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // connection closed
+            } finally {
+                closeQuietly(s);
+            }
+        }
+    }
+
+    // ---- client side ----
+
+    static final class Client implements Backend {
+        private static final class Pending {
+            final long requestId;
+            final long keyHi;
+            final long keyLo;
+            final OrderRecord order;
+            final CompletableFuture<OrderRecord> done = new CompletableFuture<>();
+
+            Pending(long requestId, long keyHi, long keyLo, OrderRecord order) {
+                this.requestId = requestId;
+                this.keyHi = keyHi;
+                this.keyLo = keyLo;
+                this.order = order;
+            }
+        }
+
+        private final java.net.Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final java.util.concurrent.ConcurrentHashMap<Long, Pending> pending = new java.util.concurrent.ConcurrentHashMap<>();
+        private final LinkedBlockingQueue<Pending> outbox = new LinkedBlockingQueue<>();
+        private final java.util.concurrent.atomic.AtomicLong nextRequest = new java.util.concurrent.atomic.AtomicLong();
+        volatile boolean broken = false;
+
+        // null if nobody answers on the port
+        static Client tryConnect(int port) {
+            java.net.Socket s = new java.net.Socket();
+            try {
+                s.connect(new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), port), 1000);
+                s.setTcpNoDelay(true);
+                s.setSoTimeout(5000); // the hello only
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.flush();
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    closeQuietly(s);
+                    return null;
+                }
+                s.setSoTimeout(0);
+                return new Client(s, in, out);
+            } catch (IOException e) {
+                closeQuietly(s);
+                return null;
+            }
+        }
+
+        private Client(java.net.Socket socket, DataInputStream in, DataOutputStream out) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+            Thread sender = new Thread(this::sendLoop, "order-ingest-send");
+            sender.setDaemon(true);
+            sender.start();
+            Thread receiver = new Thread(this::receiveLoop, "order-ingest-receive");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+
+        @Override public CompletableFuture<OrderRecord> submit(long keyHi, long keyLo, OrderRecord order) {
+            Pending p = new Pending(nextRequest.incrementAndGet(), keyHi, keyLo, order);
+            pending.put(p.requestId, p);
+            outbox.add(p);
+            // lost a race with fail(): make sure this one is not left hanging
+            if (broken && pending.remove(p.requestId, p)) p.done.completeExceptionally(new ConnectionLost("Not connected"));
+            return p.done;
+        }
+
+        private void sendLoop() {
+            List<Pending> batch = new ArrayList<>(MAX_BATCH);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+            DataOutputStream b = new DataOutputStream(body);
+            try {
+                while (!broken) {
+                    batch.clear();
+                    Pending first = outbox.poll(1, TimeUnit.SECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    outbox.drainTo(batch, MAX_BATCH - 1);
+                    for (Pending p : batch) {
+                        body.reset();
+                        b.writeByte(SUBMIT);
+                        b.writeLong(p.requestId);
+                        b.writeLong(p.keyHi);
+                        b.writeLong(p.keyLo);
+                        writeOrder(b, p.order);
+                        out.writeInt(body.size());
+                        body.writeTo(out);
+                    }
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                fail();
+            }
+        }
+
+        private void receiveLoop() {
+            try {
+                byte[] frame = new byte[256];
+                while (true) {
+                    int len = in.readInt();
+                    if (len <= 0 || len > MAX_FRAME) throw new IOException("Bad reply frame");
+                    if (frame.length < len) frame = new byte[len];
+                    in.readFully(frame, 0, len);
+                    DataInputStream b = new DataInputStream(new ByteArrayInputStream(frame, 0, len));
+                    byte status = b.readByte();
+                    Pending p = pending.remove(b.readLong());
+                    if (p == null) continue;
+                    if (status == OK) p.done.complete(p.order.withId(b.readLong()));
+                    else if (status == REJECTED) p.done.completeExceptionally(new IllegalArgumentException(b.readUTF()));
+                    else p.done.completeExceptionally(new IOException(b.readUTF()));
+                }
+            } catch (IOException e) {
+                fail();
+            }
+        }
+
+        private void fail() {
+            broken = true;
+            closeQuietly(socket);
+            for (Long id : pending.keySet()) {
+                Pending p = pending.remove(id);
+                if (p != null) p.done.completeExceptionally(new ConnectionLost("Lost connection to the order ingest owner"));
+            }
+        }
+    }
+
+    // ---- wire format of an order (same fields as a journal record, minus the id) ----
+
+    private static void writeOrder(DataOutputStream b, OrderRecord order) throws IOException {
+        b.writeLong(order.createdAt.toEpochSecond(ZoneOffset.UTC));
+        b.writeInt(order.createdAt.getNano());
+        b.writeUTF(order.customer);
+        b.writeInt(order.lines.size());
+        for (OrderRecord.Line l : order.lines) {
+            b.writeUTF(l.item);
+            b.writeInt(l.qty);
+            b.writeLong(l.unitCents);
+        }
+    }
+
+    // null if the field values are out of range
+    private static OrderRecord readOrder(DataInputStream b) throws IOException {
+        long sec = b.readLong();
+        int nano = b.readInt();
+        String customer = b.readUTF();
+        int n = b.readInt();
+        if (nano < 0 || nano > 999_999_999 || n < 0 || n > 10_000) return null;
+        List<OrderRecord.Line> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) lines.add(new OrderRecord.Line(b.readUTF(), b.readInt(), b.readLong()));
+        try {
+            return new OrderRecord(0, LocalDateTime.ofEpochSecond(sec, nano, ZoneOffset.UTC), customer, lines);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable t) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        f.completeExceptionally(t);
+        return f;
+    }
+
+    private static void closeQuietly(java.net.Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {}
+    }
+}
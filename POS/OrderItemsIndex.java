@@ -0,0 +1,178 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// ---------------- ORDER ITEMS INDEX (order id -> rows of order_items.csv) ----------------
+// order_items.idx layout: int magic, int version, long bytes of order_items.csv covered by the index,
+// then one 16-byte slot per order id (slot k-1 for id k): long offset, int length, int rowCount.
+// A slot with length 0 means the order has no indexed rows (e.g. legacy rows written without an id).
+// Only the journal owner writes the index (OrderFilesProjection: catchUp, put, markCovered). Lookups,
+// from any process, re-read the covered count each time, trust a slot only if its rows lie below it and
+// otherwise scan the uncovered tail of order_items.csv without writing anything.
+class OrderItemsIndex {
+    private static final int MAGIC = 0x504F5349; // "POSI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT = 16;
+    private static final Map<String, OrderItemsIndex> open = new HashMap<>();
+
+    private final File itemsFile;
+    private final File indexFile;
+    private FileChannel channel; // the owner's read-write handle
+    private long covered;
+
+    static synchronized OrderItemsIndex of(File orderItemsFile) {
+        return open.computeIfAbsent(orderItemsFile.getAbsolutePath(), k -> new OrderItemsIndex(orderItemsFile, fileFor(orderItemsFile)));
+    }
+
+    static File fileFor(File orderItemsFile) {
+        return new File(orderItemsFile.getAbsoluteFile().getParentFile(), "order_items.idx");
+    }
+
+    OrderItemsIndex(File itemsFile, File indexFile) {
+        this.itemsFile = itemsFile;
+        this.indexFile = indexFile;
+    }
+
+    // Owner only: index whatever order_items.csv gained since the index was last written (or rebuild if
+    // it shrank).
+    synchronized void catchUp() {
+        try {
+            ensureOpen();
+            long size = itemsFile.exists() ? itemsFile.length() : 0;
+            if (covered > size) {
+                channel.truncate(HEADER_SIZE);
+                covered = 0;
+            }
+            if (covered < size) scanFrom(covered, size);
+        } catch (IOException e) {
+            Metrics.failure("OrderItemsIndex", e);
+        }
+    }
+
+    synchronized void put(long orderId, long offset, int length, int rows) throws IOException {
+        ensureOpen();
+        ByteBuffer slot = ByteBuffer.allocate(SLOT).putLong(offset).putInt(length).putInt(rows);
+        slot.flip();
+        channel.write(slot, slotPos(orderId));
+    }
+
+    synchronized void markCovered(long bytes) throws IOException {
+        ensureOpen();
+        covered = bytes;
+        ByteBuffer b = ByteBuffer.allocate(8).putLong(0, bytes);
+        channel.write(b, 8);
+    }
+
+    // The csv rows of one order, or null if it has none. Never writes: the owner may be appending.
+    List<String> readRows(long orderId) {
+        try {
+            long covered = 0;
+            ByteBuffer slot = ByteBuffer.allocate(SLOT);
+            if (indexFile.exists()) {
+                try (FileChannel idx = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    if (readFully(idx, header, 0) && header.getInt(0) == MAGIC && header.getInt(4) == VERSION) {
+                        covered = header.getLong(8);
+                        if (!readFully(idx, slot, slotPos(orderId))) slot.putInt(8, 0);
+                    }
+                }
+            }
+            long size = itemsFile.exists() ? itemsFile.length() : 0;
+            if (covered > size) covered = 0; // replaced csv: the owner rebuilds when it next opens
+            long offset = slot.getLong(0);
+            int length = slot.getInt(8);
+            if (length > 0 && offset + length <= covered) return readRange(offset, length);
+
+            // not indexed yet (or the slot's rows are still buffered): look in the uncovered tail
+            long[] run = {0, 0};
+            CsvScanner.scan(itemsFile, covered, size, r -> {
+                if (r.fieldCount() < 5 || r.parseLong(r.fieldCount() - 1, 0) != orderId) return;
+                if (run[1] == 0) run[0] = r.rowOffset();
+                if (run[1] == 0 || run[1] == r.rowOffset()) run[1] = r.rowOffset() + r.rowLength();
+            });
+            return run[1] == 0 ? null : readRange(run[0], (int) (run[1] - run[0]));
+        } catch (IOException e) {
+            Metrics.failure("OrderItemsIndex", e);
+            return null;
+        }
+    }
+
+    private List<String> readRange(long offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        try (FileChannel items = FileChannel.open(itemsFile.toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && items.read(buf, offset + buf.position()) > 0) { }
+        }
+        String text = new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+        List<String> rows = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            if (!line.isEmpty()) rows.add(line);
+        }
+        return rows;
+    }
+
+    private static boolean readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            if (ch.read(b, pos + b.position()) <= 0) return false;
+        }
+        return true;
+    }
+
+    // Owner only: rebuild from scratch by scanning order_items.csv.
+    synchronized void rebuild() {
+        try {
+            ensureOpen();
+            channel.truncate(HEADER_SIZE);
+            covered = 0;
+            catchUp();
+        } catch (IOException e) {
+            Metrics.failure("OrderItemsIndex", e);
+        }
+    }
+
+    private long slotPos(long orderId) {
+        return HEADER_SIZE + (orderId - 1) * SLOT;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) return;
+        channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() >= HEADER_SIZE) {
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() == MAGIC && header.getInt() == VERSION) {
+                covered = header.getLong();
+                return;
+            }
+        }
+        channel.truncate(0);
+        header.clear();
+        header.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+        channel.write(header, 0);
+        covered = 0;
+    }
+
+    // consecutive rows carrying the same order id (5th column) form one slot
+    private void scanFrom(long from, long to) throws IOException {
+        long[] run = {0, 0, 0, 0}; // id, start offset, end offset, rows
+        long end = CsvScanner.scan(itemsFile, from, to, r -> {
+            long id = r.fieldCount() >= 5 ? r.parseLong(r.fieldCount() - 1, 0) : 0;
+            if (id != run[0]) {
+                if (run[0] > 0) put(run[0], run[1], (int) (run[2] - run[1]), (int) run[3]);
+                run[0] = id;
+                run[1] = r.rowOffset();
+                run[3] = 0;
+            }
+            run[2] = r.rowOffset() + r.rowLength();
+            run[3]++;
+        });
+        if (run[0] > 0) put(run[0], run[1], (int) (run[2] - run[1]), (int) run[3]);
+        markCovered(end);
+    }
+}
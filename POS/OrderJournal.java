@@ -0,0 +1,417 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// ---------------- ORDER JOURNAL (append-only, CRC-checked, group commit) ----------------
+// orders.journal layout: "POSJ" magic + version, then one record per order:
+//   int bodyLength | body | int crc32(body)
+//   body = long orderId, long epochSecond, int nano, UTF customer, int lineCount, (UTF item, int qty, long unitCents)*
+//          [long keyHi, long keyLo]   (only when the order carries an idempotency key; older readers ignore it)
+// The journal is the durability point of a checkout. The legacy text files (sales.txt, transactions.txt,
+// orders.csv, order_items.csv) are projections written by the same writer thread and replayed on startup
+// if the process died between the journal write and the projection.
+class OrderJournal {
+    private static final int MAGIC = 0x504F534A; // "POSJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD = 1 << 20;
+    private static final int MAX_BATCH = 256;
+
+    // when a commit is considered done:
+    //   ORDER    - fsync after every batch, futures complete once the batch is on disk (group commit)
+    //   INTERVAL - fsync at most every intervalMs, futures complete once the batch is written
+    //   OS       - never fsync explicitly (only on close), the OS decides when pages hit the disk
+    static final class FsyncPolicy {
+        enum Mode { ORDER, INTERVAL, OS }
+
+        final Mode mode;
+        final long intervalMs;
+
+        private FsyncPolicy(Mode mode, long intervalMs) {
+            this.mode = mode;
+            this.intervalMs = intervalMs;
+        }
+
+        static FsyncPolicy perOrder() { return new FsyncPolicy(Mode.ORDER, 0); }
+        static FsyncPolicy everyMillis(long ms) { return new FsyncPolicy(Mode.INTERVAL, Math.max(1, ms)); }
+        static FsyncPolicy osManaged() { return new FsyncPolicy(Mode.OS, 0); }
+
+        // accepts "order", "os", "250ms" or "interval:250"
+        static FsyncPolicy parse(String s) {
+            if (s == null || s.trim().isEmpty()) return perOrder();
+            String v = s.trim().toLowerCase(Locale.ROOT);
+            try {
+                if (v.equals("order")) return perOrder();
+                if (v.equals("os")) return osManaged();
+                if (v.startsWith("interval:")) return everyMillis(Long.parseLong(v.substring(9).trim()));
+                if (v.endsWith("ms")) return everyMillis(Long.parseLong(v.substring(0, v.length() - 2).trim()));
+            } catch (NumberFormatException ignored) {}
+            return perOrder();
+        }
+
+        @Override public String toString() {
+            return mode == Mode.INTERVAL ? intervalMs + "ms" : mode.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final class Pending {
+        final OrderRecord order;
+        final byte[] body; // encoded by the caller with id 0; the writer patches in the id it assigns
+        final CompletableFuture<OrderRecord> done = new CompletableFuture<>();
+
+        Pending(OrderRecord order, byte[] body) {
+            this.order = order;
+            this.body = body;
+        }
+    }
+
+    private static final Pending STOP = new Pending(null, null);
+    private static OrderJournal shared;
+
+    private final File journalFile;
+    private final FsyncPolicy policy;
+    private final OrderFilesProjection projection;
+    private final FileChannel channel;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final CRC32 crc = new CRC32();
+
+    private final List<java.util.function.Consumer<List<OrderRecord>>> commitListeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    private volatile boolean closed = false;
+    private long lastId;             // writer thread only (after open)
+    private long lastForce = System.currentTimeMillis();
+    private boolean dirty = false;
+
+    static synchronized OrderJournal shared() {
+        if (shared == null) {
+            try {
+                shared = new OrderJournal(new File("orders.journal"),
+                        FsyncPolicy.parse(System.getProperty("pos.journal.fsync")),
+                        new OrderFilesProjection(new File("sales.txt"), new File("transactions.txt"),
+                                new File("orders.csv"), new File("order_items.csv")));
+                OrderJournal j = shared;
+                SalesRollupStore rollups = SalesRollupStore.of(new File("orders.csv"), new File("order_items.csv"));
+                // rollups catch up (and save once idle) off the writer thread so checkouts never wait on
+                // them; one queued run covers every batch committed before it starts
+                java.util.concurrent.atomic.AtomicBoolean queued = new java.util.concurrent.atomic.AtomicBoolean();
+                ExecutorService follower = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "rollup-follower");
+                    t.setDaemon(true);
+                    return t;
+                });
+                j.addCommitListener(batch -> {
+                    if (queued.compareAndSet(false, true)) follower.execute(() -> {
+                        queued.set(false);
+                        rollups.catchUp();
+                    });
+                });
+                Runtime.getRuntime().addShutdownHook(new Thread(j::close, "order-journal-shutdown"));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open order journal", e);
+            }
+        }
+        return shared;
+    }
+
+    OrderJournal(File journalFile, FsyncPolicy policy, OrderFilesProjection projection) throws IOException {
+        this.journalFile = journalFile;
+        this.policy = policy;
+        this.projection = projection;
+        this.channel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+        // bring the text projections up to date with anything they missed before the last shutdown
+        projection.open();
+        // a journal that was reset must not reuse ids the text files already carry
+        lastId = Math.max(lastId, projection.maxProjectedId());
+        List<OrderRecord> missed = new ArrayList<>();
+        replay(projection.lastProjectedId(), missed::add);
+        if (!missed.isEmpty()) projection.append(missed);
+        projection.flush();
+
+        writer = new Thread(this::writeLoop, "order-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    FsyncPolicy policy() {
+        return policy;
+    }
+
+    long lastOrderId() {
+        return lastId;
+    }
+
+    // Called on the writer thread after a batch is committed and projected to the text files.
+    void addCommitListener(java.util.function.Consumer<List<OrderRecord>> listener) {
+        commitListeners.add(listener);
+    }
+
+    // Queue an order for commit. The id is assigned by the writer thread in journal order; the future
+    // completes with the stored record once the commit is done according to the fsync policy.
+    CompletableFuture<OrderRecord> append(String customer, LocalDateTime createdAt, List<OrderRecord.Line> lines) {
+        return append(new OrderRecord(0, createdAt, customer, lines));
+    }
+
+    // The record's idempotency key (if any) is stored with it, so the commit and its key survive a crash together.
+    // The record is encoded here, so one that cannot be stored (or read back by recover) fails only its own
+    // future instead of the whole group-commit batch it would have joined.
+    CompletableFuture<OrderRecord> append(OrderRecord order) {
+        CompletableFuture<OrderRecord> failed = new CompletableFuture<>();
+        if (closed) {
+            failed.completeExceptionally(new IOException("Order journal is closed"));
+            return failed;
+        }
+        byte[] body;
+        try {
+            body = encode(order);
+        } catch (IOException e) { // UTFDataFormatException: a name over 64 KB
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (body.length > MAX_RECORD) {
+            failed.completeExceptionally(new IOException("Order too large for the journal: " + body.length + " bytes"));
+            return failed;
+        }
+        Pending p = new Pending(order, body);
+        queue.add(p);
+        return p.done;
+    }
+
+    // Read every intact record with orderId > afterId, in journal order.
+    void replay(long afterId, java.util.function.Consumer<OrderRecord> sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            in.skipNBytes(HEADER_SIZE);
+            while (true) {
+                OrderRecord r;
+                try {
+                    r = readRecord(in, null);
+                } catch (EOFException e) {
+                    return;
+                }
+                if (r == null) return;
+                if (r.orderId > afterId) sink.accept(r);
+            }
+        }
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        // no interrupt: interrupting a thread inside a FileChannel call closes the channel
+        queue.add(STOP);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (IOException e) {
+            Metrics.failure("OrderJournal", e);
+        }
+        projection.close();
+    }
+
+    // Scan the journal, verify every CRC and cut off a torn tail left by a crash mid-write.
+    private void recover() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(false);
+            channel.position(HEADER_SIZE);
+            lastId = 0;
+            return;
+        }
+        long good = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not an order journal: " + journalFile);
+            in.readInt(); // version
+            long[] pos = {HEADER_SIZE};
+            while (true) {
+                OrderRecord r;
+                try {
+                    r = readRecord(in, pos);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (r == null) break;
+                lastId = r.orderId;
+                good = pos[0];
+            }
+        }
+        if (good < channel.size()) channel.truncate(good);
+        channel.position(good);
+    }
+
+    // Returns null on a corrupt record; pos (if given) is advanced past the record.
+    private OrderRecord readRecord(DataInputStream in, long[] pos) throws IOException {
+        int len = in.readInt();
+        if (len <= 0 || len > MAX_RECORD) return null;
+        byte[] body = new byte[len];
+        in.readFully(body);
+        int stored = in.readInt();
+        CRC32 c = new CRC32();
+        c.update(body, 0, len);
+        if ((int) c.getValue() != stored) return null;
+        if (pos != null) pos[0] += 4 + len + 4;
+
+        DataInputStream b = new DataInputStream(new ByteArrayInputStream(body));
+        long id = b.readLong();
+        LocalDateTime at = LocalDateTime.ofEpochSecond(b.readLong(), b.readInt(), ZoneOffset.UTC);
+        String customer = b.readUTF();
+        int n = b.readInt();
+        List<OrderRecord.Line> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            lines.add(new OrderRecord.Line(b.readUTF(), b.readInt(), b.readLong()));
+        }
+        if (b.available() >= 16) return new OrderRecord(id, at, customer, lines, b.readLong(), b.readLong());
+        return new OrderRecord(id, at, customer, lines);
+    }
+
+    private static byte[] encode(OrderRecord r) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + 32 * r.lines.size());
+        DataOutputStream d = new DataOutputStream(body);
+        d.writeLong(r.orderId);
+        d.writeLong(r.createdAt.toEpochSecond(ZoneOffset.UTC));
+        d.writeInt(r.createdAt.getNano());
+        d.writeUTF(r.customer);
+        d.writeInt(r.lines.size());
+        for (OrderRecord.Line l : r.lines) {
+            d.writeUTF(l.item);
+            d.writeInt(l.qty);
+            d.writeLong(l.unitCents);
+        }
+        if (r.hasKey()) {
+            d.writeLong(r.keyHi);
+            d.writeLong(r.keyLo);
+        }
+        d.flush();
+        return body.toByteArray();
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        List<OrderRecord> stored = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        while (true) {
+            batch.clear();
+            stored.clear();
+            try {
+                Pending first = policy.mode == FsyncPolicy.Mode.INTERVAL
+                        ? queue.poll(policy.intervalMs, TimeUnit.MILLISECONDS)
+                        : queue.take();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                continue;
+            }
+            boolean stop = batch.remove(STOP);
+            if (stop) queue.drainTo(batch); // commits that raced with close()
+
+            if (!batch.isEmpty()) {
+                long start = -1;
+                try {
+                    long t0 = System.nanoTime();
+                    Metrics.JOURNAL_BATCH.record(batch.size());
+                    start = channel.position();
+                    buf.clear();
+                    for (Pending p : batch) {
+                        OrderRecord r = p.order.withId(lastId + 1 + stored.size());
+                        ByteBuffer.wrap(p.body).putLong(0, r.orderId);
+                        crc.reset();
+                        crc.update(p.body, 0, p.body.length);
+                        buf = ensureCapacity(buf, 8 + p.body.length);
+                        buf.putInt(p.body.length).put(p.body).putInt((int) crc.getValue());
+                        stored.add(r);
+                    }
+                    buf.flip();
+                    while (buf.hasRemaining()) channel.write(buf);
+                    Metrics.JOURNAL_WRITE.recordSince(t0);
+                    dirty = true;
+                    maybeForce(policy.mode == FsyncPolicy.Mode.ORDER);
+                    lastId += stored.size();
+
+                    // text projections are derived data: a failure here must not fail the commit
+                    try {
+                        long t1 = System.nanoTime();
+                        projection.append(stored);
+                        long t2 = System.nanoTime();
+                        Metrics.PROJECTION_APPEND.record(t2 - t1);
+                        projection.flush();
+                        Metrics.PROJECTION_FLUSH.recordSince(t2);
+                    } catch (IOException e) {
+                        Metrics.failure("OrderJournal", e);
+                    }
+                    for (int i = 0; i < batch.size(); i++) batch.get(i).done.complete(stored.get(i));
+                    List<OrderRecord> committed = new ArrayList<>(stored);
+                    for (java.util.function.Consumer<List<OrderRecord>> l : commitListeners) {
+                        try {
+                            l.accept(committed);
+                        } catch (RuntimeException e) {
+                            Metrics.failure("OrderJournal", e);
+                        }
+                    }
+                } catch (IOException e) {
+                    for (Pending p : batch) p.done.completeExceptionally(e);
+                    try {
+                        // drop whatever part of the batch made it out so ids stay contiguous
+                        if (start >= 0) {
+                            channel.truncate(start);
+                            channel.position(start);
+                        }
+                    } catch (IOException ignored) {}
+                    buf = ByteBuffer.allocate(64 * 1024);
+                }
+            } else {
+                try {
+                    maybeForce(false);
+                } catch (IOException e) {
+                    Metrics.failure("OrderJournal", e);
+                }
+            }
+
+            if (stop) return;
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buf, int needed) {
+        if (buf.remaining() >= needed) return buf;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + needed));
+        buf.flip();
+        bigger.put(buf);
+        return bigger;
+    }
+
+    private void maybeForce(boolean now) throws IOException {
+        if (!dirty) return;
+        boolean due = now || (policy.mode == FsyncPolicy.Mode.INTERVAL
+                && System.currentTimeMillis() - lastForce >= policy.intervalMs);
+        if (due) {
+            long t0 = System.nanoTime();
+            channel.force(false);
+            Metrics.JOURNAL_FSYNC.recordSince(t0);
+            lastForce = System.currentTimeMillis();
+            dirty = false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package billgenerator;
+
+import java.time.*;
+import java.util.*;
+
+// ---------------- ORDER RECORD (one committed checkout) ----------------
+final class OrderRecord {
+    static final class Line {
+        final String item;
+        final int qty;
+        final long unitCents;
+
+        Line(String item, int qty, long unitCents) {
+            this.item = item;
+            this.qty = qty;
+            this.unitCents = unitCents;
+        }
+
+        long lineCents() {
+            return unitCents * qty;
+        }
+    }
+
+    final long orderId;            // 0 until the journal assigns one
+    final LocalDateTime createdAt;
+    final String customer;
+    final List<Line> lines;
+    final long keyHi, keyLo;       // idempotency key of the submission, 0/0 = none (see OrderIngest)
+
+    OrderRecord(long orderId, LocalDateTime createdAt, String customer, List<Line> lines) {
+        this(orderId, createdAt, customer, lines, 0, 0);
+    }
+
+    OrderRecord(long orderId, LocalDateTime createdAt, String customer, List<Line> lines, long keyHi, long keyLo) {
+        this.orderId = orderId;
+        this.createdAt = createdAt;
+        this.customer = customer;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.keyHi = keyHi;
+        this.keyLo = keyLo;
+    }
+
+    OrderRecord withId(long id) {
+        return new OrderRecord(id, createdAt, customer, lines, keyHi, keyLo);
+    }
+
+    boolean hasKey() {
+        return keyHi != 0 || keyLo != 0;
+    }
+
+    long totalCents() {
+        long sum = 0;
+        for (Line l : lines) sum += l.lineCents();
+        return sum;
+    }
+
+    String receiptText() {
+        return appendReceipt(new StringBuilder(64 + 32 * lines.size())).toString();
+    }
+
+    StringBuilder appendReceipt(StringBuilder receipt) {
+        receipt.append("Receipt for ").append(customer).append('\n');
+        for (Line l : lines) {
+            receipt.append(l.item).append(" x").append(l.qty).append(" - ");
+            Money.append(receipt, l.lineCents()).append('\n');
+        }
+        receipt.append("TOTAL: ");
+        Money.append(receipt, totalCents()).append('\n');
+        return receipt;
+    }
+}
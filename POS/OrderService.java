@@ -0,0 +1,181 @@
+package billgenerator;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// ---------------- ORDER SERVICE (headless checkout API, safe from any thread) ----------------
+// An order is an immutable OrderRecord (id 0); checkout() validates and normalizes it and hands it to the
+// order journal - in this process, or through the ingestion daemon that owns it (see OrderIngest) - whose
+// queue is lock-free for producers and whose single writer assigns ids and batches the disk work. Nothing here touches Swing, so cashier windows, scripts and the ingestion side all go
+// through the same path. There is no global lock: a checkout only takes the read side of its customer's
+// stripe while it checks the account and enqueues, and account renames take the write side of the two
+// stripes involved, so a checkout lands either fully before a rename (under the old name) or is rejected
+// after it. Checkouts for different customers never wait on each other.
+final class OrderService {
+    private static final int STRIPES = 64; // power of two
+    private static final int MAX_LINES = 1000;
+    private static final int MAX_QTY = 1_000_000;
+    // chars per customer or item name; with MAX_LINES this keeps every order well under the journal's record limit
+    private static final int MAX_NAME = 200;
+
+    private static OrderService shared;
+
+    private final OrderIngest.Backend backend;
+    private final AccountStore accounts;
+    private final java.util.concurrent.locks.ReentrantReadWriteLock[] stripes =
+            new java.util.concurrent.locks.ReentrantReadWriteLock[STRIPES];
+    private final java.util.concurrent.atomic.LongAdder accepted = Metrics.counter("checkout.accepted");
+    private final java.util.concurrent.atomic.LongAdder rejected = Metrics.counter("checkout.rejected");
+
+    static synchronized OrderService shared() {
+        if (shared == null) {
+            try {
+                shared = new OrderService(new OrderIngest.Router(OrderIngest.PORT), AccountStore.shared());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot reach the order files", e);
+            }
+        }
+        return shared;
+    }
+
+    OrderService(OrderIngest.Backend backend, AccountStore accounts) {
+        this.backend = backend;
+        this.accounts = accounts;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    }
+
+    CompletableFuture<OrderRecord> checkout(String customer, List<OrderRecord.Line> lines) {
+        return checkout(new OrderRecord(0, LocalDateTime.now(), customer, lines));
+    }
+
+    CompletableFuture<OrderRecord> checkout(OrderRecord order) {
+        java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+        long hi = rnd.nextLong(), lo = rnd.nextLong();
+        return checkout(order, hi == 0 && lo == 0 ? 1 : hi, lo);
+    }
+
+    // Completes with the stored record (id assigned) once the journal commit is done, or exceptionally
+    // with IllegalArgumentException for an order that was rejected before it reached the journal.
+    // (keyHi, keyLo) is the idempotency key: resubmitting the same key returns the first commit's id.
+    CompletableFuture<OrderRecord> checkout(OrderRecord order, long keyHi, long keyLo) {
+        long start = System.nanoTime();
+        String problem = validate(order);
+        if (problem != null) return reject(problem);
+        List<OrderRecord.Line> lines = normalize(order.lines);
+        if (lines == null) return reject("Invalid quantity");
+
+        java.util.concurrent.locks.Lock lock = stripe(order.customer).readLock();
+        lock.lock();
+        try {
+            if (!accounts.exists(order.customer)) return reject("Unknown customer: " + order.customer);
+            accepted.increment();
+            CompletableFuture<OrderRecord> done = backend.submit(keyHi, keyLo, lines == order.lines ? order
+                    : new OrderRecord(0, order.createdAt, order.customer, lines));
+            done.whenComplete((r, err) -> Metrics.CHECKOUT.recordSince(start));
+            return done;
+        } catch (IOException e) {
+            CompletableFuture<OrderRecord> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Move an account (password + profile) to a new username, one append to the account store. Fails if
+    // `from` does not exist or `to` is taken by someone else.
+    boolean renameCustomer(String from, String to, String password, String[] profile) throws IOException {
+        java.util.concurrent.locks.ReentrantReadWriteLock a = stripe(from), b = stripe(to);
+        // fixed order so two opposite renames cannot deadlock
+        java.util.concurrent.locks.ReentrantReadWriteLock first = stripeIndex(from) <= stripeIndex(to) ? a : b;
+        java.util.concurrent.locks.ReentrantReadWriteLock second = first == a ? b : a;
+        first.writeLock().lock();
+        second.writeLock().lock();
+        try {
+            return accounts.rename(from, new AccountStore.Account(to, password, profile));
+        } finally {
+            second.writeLock().unlock();
+            first.writeLock().unlock();
+        }
+    }
+
+    long acceptedCount() {
+        return accepted.sum();
+    }
+
+    long rejectedCount() {
+        return rejected.sum();
+    }
+
+    // customer and item names end up as unquoted fields of the order CSVs and sales.txt, so no commas or
+    // line breaks; accounts live in the binary AccountStore, where any character is fine
+    static String validate(OrderRecord order) {
+        if (order.orderId != 0) return "Order already has an id";
+        if (!isName(order.customer)) return "Invalid customer name";
+        if (order.lines.isEmpty()) return "Order has no items";
+        if (order.lines.size() > MAX_LINES) return "Order has too many lines";
+        for (OrderRecord.Line l : order.lines) {
+            if (l == null || !isName(l.item)) return "Invalid item name";
+            if (l.qty <= 0 || l.qty > MAX_QTY) return "Invalid quantity for " + l.item;
+            if (l.unitCents < 0 || l.unitCents > Long.MAX_VALUE / MAX_QTY) return "Invalid price for " + l.item;
+        }
+        return null;
+    }
+
+    private static boolean isName(String s) {
+        if (s == null || s.length() > MAX_NAME || s.trim().isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '\n' || c == '\r') return false;
+        }
+        return true;
+    }
+
+    // one line per (item, unit price), first-appearance order; most orders are already unique.
+    // null if merging pushes a quantity past MAX_QTY
+    private static List<OrderRecord.Line> normalize(List<OrderRecord.Line> lines) {
+        boolean dup = false;
+        for (int i = 1; i < lines.size() && !dup; i++) {
+            for (int j = 0; j < i; j++) {
+                if (sameProduct(lines.get(i), lines.get(j))) {
+                    dup = true;
+                    break;
+                }
+            }
+        }
+        if (!dup) return lines;
+        List<OrderRecord.Line> out = new ArrayList<>(lines.size());
+        for (OrderRecord.Line l : lines) {
+            int at = -1;
+            for (int j = 0; j < out.size() && at < 0; j++) {
+                if (sameProduct(out.get(j), l)) at = j;
+            }
+            if (at < 0) out.add(l);
+            else if (out.get(at).qty + l.qty > MAX_QTY) return null;
+            else out.set(at, new OrderRecord.Line(l.item, out.get(at).qty + l.qty, l.unitCents));
+        }
+        return out;
+    }
+
+    private static boolean sameProduct(OrderRecord.Line a, OrderRecord.Line b) {
+        return a.unitCents == b.unitCents && a.item.equals(b.item);
+    }
+
+    private CompletableFuture<OrderRecord> reject(String why) {
+        rejected.increment();
+        CompletableFuture<OrderRecord> f = new CompletableFuture<>();
+        f.completeExceptionally(new IllegalArgumentException(why));
+        return f;
+    }
+
+    private java.util.concurrent.locks.ReentrantReadWriteLock stripe(String customer) {
+        return stripes[stripeIndex(customer)];
+    }
+
+    private static int stripeIndex(String customer) {
+        int h = customer.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
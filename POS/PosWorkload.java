@@ -0,0 +1,293 @@
+package billgenerator;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// ---------------- POS WORKLOAD (synthetic store history + checkout replay) ----------------
+// Works on the data files of the current directory, like the application itself.
+//
+//   java -cp out billgenerator.PosWorkload generate [--orders 1000000] [--years 3] [--customers 5000]
+//       [--items 120] [--item-skew 1.1] [--customer-skew 0.8] [--growth 0.15] [--seed 42] [--force]
+//   java -cp out billgenerator.PosWorkload replay [--rate 1000] [--seconds 30] [--item-skew 1.1]
+//       [--customer-skew 0.8] [--seed 7] [--analytics]
+//   java -cp out billgenerator.PosWorkload all ...   (generate, then replay)
+//
+// generate writes menu.txt, customers.txt, profiles.txt (imported into the account store on first use)
+// and the order files (through the same projection the order journal uses, so the indexes come out
+// identical). Item and customer popularity are Zipfian; traffic per day follows weekday and month factors
+// plus a yearly growth trend, and each day has lunch and dinner peaks.
+//
+// replay is open loop: checkout i is due at start + i/rate whether or not earlier ones have finished, and
+// its latency is measured from that due time to the commit, so a stalled writer shows up as latency
+// instead of silently lowering the offered rate.
+public class PosWorkload {
+    private static final String[] CATEGORIES = {"Food", "Drinks", "Desserts", "Combo Meal", "Snacks"};
+    private static final double[] WEEKDAY = {0.8, 0.9, 0.95, 1.0, 1.3, 1.35, 1.1}; // Monday first
+    private static final double[] MONTH = {0.9, 0.85, 0.95, 1.0, 1.0, 1.05, 1.1, 1.1, 0.95, 1.0, 1.15, 1.5};
+    // share of a day's orders per hour, 08:00 to 21:59
+    private static final double[] HOURS = {2, 3, 4, 9, 12, 9, 5, 4, 4, 6, 10, 11, 7, 3};
+
+    // inverse-CDF sampler over ranks 0..n-1 with P(k) ~ 1 / (k+1)^s
+    static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double s) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, s);
+                cdf[k] = sum;
+            }
+            for (int k = 0; k < n; k++) cdf[k] /= sum;
+        }
+
+        int next(Random r) {
+            int i = Arrays.binarySearch(cdf, r.nextDouble());
+            return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: PosWorkload generate|replay|all [options]");
+            System.exit(2);
+        }
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+            boolean flag = i + 1 >= args.length || args[i + 1].startsWith("--");
+            opt.put(args[i].substring(2), flag ? "true" : args[++i]);
+        }
+        String cmd = args[0];
+        if (cmd.equals("generate") || cmd.equals("all")) generate(opt);
+        if (cmd.equals("replay") || cmd.equals("all")) replay(opt);
+        System.exit(0);
+    }
+
+    // ---- generate ----
+
+    static void generate(Map<String, String> opt) throws IOException {
+        long orders = Long.parseLong(opt.getOrDefault("orders", "1000000"));
+        int years = Integer.parseInt(opt.getOrDefault("years", "3"));
+        int customerCount = Integer.parseInt(opt.getOrDefault("customers", "5000"));
+        int itemCount = Integer.parseInt(opt.getOrDefault("items", "120"));
+        double itemSkew = Double.parseDouble(opt.getOrDefault("item-skew", "1.1"));
+        double customerSkew = Double.parseDouble(opt.getOrDefault("customer-skew", "0.8"));
+        double growth = Double.parseDouble(opt.getOrDefault("growth", "0.15"));
+        Random r = new Random(Long.parseLong(opt.getOrDefault("seed", "42")));
+
+        String[] dataFiles = {"menu.txt", "customers.txt", "profiles.txt", "accounts.log", "orders.csv",
+                "order_items.csv", "sales.txt", "transactions.txt", "orders.journal"};
+        for (String f : dataFiles) {
+            if (new File(f).exists() && !opt.containsKey("force")) {
+                throw new IOException(f + " already exists here; use --force to replace the store's data");
+            }
+        }
+        for (String f : dataFiles) new File(f).delete();
+        // and whatever the stores keep next to them, named the way the stores name it
+        File ordersFile = new File("orders.csv"), itemsFile = new File("order_items.csv");
+        List<File> derived = new ArrayList<>(AccountStore.files(new File("accounts.log")));
+        derived.addAll(Arrays.asList(AccountStore.migrated(new File("customers.txt")),
+                AccountStore.migrated(new File("profiles.txt")), OrderIngest.OWNER_LOCK,
+                TimeIndex.fileFor(ordersFile), TimeIndex.fileFor(itemsFile), OrderItemsIndex.fileFor(itemsFile),
+                CustomerOrderIndex.dirFor(ordersFile), SalesRollupStore.fileFor(ordersFile)));
+        derived.addAll(new NotificationInbox(NotificationInbox.ADMIN_LOG).files());
+        derived.addAll(new NotificationInbox(NotificationInbox.CUSTOMER_LOG).files());
+        for (File f : derived) deleteTree(f);
+
+        long t0 = System.nanoTime();
+        List<MenuCatalog.Item> menu = new ArrayList<>(itemCount);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < itemCount; i++) {
+            String cat = CATEGORIES[i % CATEGORIES.length];
+            sb.setLength(0);
+            Money.append(sb, 2500 + r.nextInt(400) * 50L);
+            menu.add(new MenuCatalog.Item(cat + " " + (i / CATEGORIES.length + 1), sb.toString(), cat));
+        }
+        writeLines(new File("menu.txt"), menu.size(), i -> menu.get(i).name + "," + menu.get(i).priceText + "," + menu.get(i).category);
+        writeLines(new File("customers.txt"), customerCount, i -> "customer" + i + ":pw" + i);
+        writeLines(new File("profiles.txt"), customerCount, i -> "customer" + i + ":First" + i + "::Last" + i);
+
+        // orders per day: weight by weekday, month and trend, then hand out the total in proportion
+        LocalDate first = LocalDate.now().minusYears(years);
+        int days = (int) (LocalDate.now().toEpochDay() - first.toEpochDay());
+        double[] weight = new double[days];
+        double total = 0;
+        for (int d = 0; d < days; d++) {
+            LocalDate day = first.plusDays(d);
+            weight[d] = WEEKDAY[day.getDayOfWeek().getValue() - 1] * MONTH[day.getMonthValue() - 1]
+                    * Math.pow(1 + growth, d / 365.0) * (0.9 + 0.2 * r.nextDouble());
+            total += weight[d];
+        }
+        double hourSum = 0;
+        for (double h : HOURS) hourSum += h;
+
+        Zipf items = new Zipf(itemCount, itemSkew);
+        Zipf customers = new Zipf(customerCount, customerSkew);
+        OrderFilesProjection projection = new OrderFilesProjection(new File("sales.txt"), new File("transactions.txt"),
+                new File("orders.csv"), new File("order_items.csv"));
+        projection.open();
+        List<OrderRecord> batch = new ArrayList<>(1024);
+        long id = 0;
+        double carry = 0;
+        for (int d = 0; d < days && id < orders; d++) {
+            double exact = orders * weight[d] / total + carry;
+            long today = d == days - 1 ? orders - id : Math.min(orders - id, (long) exact);
+            carry = exact - today;
+            long[] seconds = new long[(int) today];
+            for (int i = 0; i < today; i++) seconds[i] = secondOfDay(r, hourSum);
+            Arrays.sort(seconds);
+            LocalDateTime midnight = first.plusDays(d).atStartOfDay();
+            for (long s : seconds) {
+                LocalDateTime at = midnight.plusSeconds(s).plusNanos(r.nextInt(1_000_000_000));
+                batch.add(new OrderRecord(++id, at, "customer" + customers.next(r), basket(r, items, menu)));
+                if (batch.size() == 1024) {
+                    projection.append(batch);
+                    batch.clear();
+                }
+            }
+        }
+        projection.append(batch);
+        projection.flush();
+        projection.close();
+        System.out.printf(Locale.ROOT, "generated %d orders over %d days, %d customers, %d items in %.1f s%n",
+                id, days, customerCount, itemCount, (System.nanoTime() - t0) / 1e9);
+    }
+
+    private static long secondOfDay(Random r, double hourSum) {
+        double x = r.nextDouble() * hourSum;
+        int h = 0;
+        while (h < HOURS.length - 1 && x >= HOURS[h]) x -= HOURS[h++];
+        return (8 + h) * 3600L + r.nextInt(3600);
+    }
+
+    // 1-5 lines, distinct items, smaller baskets more likely
+    private static List<OrderRecord.Line> basket(Random r, Zipf items, List<MenuCatalog.Item> menu) {
+        int n = 1 + (int) Math.min(4, -Math.log(1 - r.nextDouble()) * 1.2);
+        List<OrderRecord.Line> lines = new ArrayList<>(n);
+        for (int tries = 0; lines.size() < n && tries < 4 * n; tries++) {
+            MenuCatalog.Item it = menu.get(items.next(r));
+            boolean dup = false;
+            for (OrderRecord.Line l : lines) dup |= l.item.equals(it.name);
+            if (!dup) lines.add(new OrderRecord.Line(it.name, 1 + (r.nextInt(10) == 0 ? 1 + r.nextInt(3) : 0), it.priceCents));
+        }
+        return lines;
+    }
+
+    // ---- replay ----
+
+    static void replay(Map<String, String> opt) throws Exception {
+        double rate = Double.parseDouble(opt.getOrDefault("rate", "1000"));
+        double seconds = Double.parseDouble(opt.getOrDefault("seconds", "30"));
+        double itemSkew = Double.parseDouble(opt.getOrDefault("item-skew", "1.1"));
+        double customerSkew = Double.parseDouble(opt.getOrDefault("customer-skew", "0.8"));
+        Random r = new Random(Long.parseLong(opt.getOrDefault("seed", "7")));
+
+        List<String> customers = AccountStore.shared().usernames();
+        Collections.sort(customers); // stable ranks for the skew
+        List<MenuCatalog.Item> menu = new ArrayList<>();
+        for (MenuCatalog.Item it : MenuCatalog.shared().current().items) {
+            if (it.hasPrice()) menu.add(it);
+        }
+        if (customers.isEmpty() || menu.isEmpty()) throw new IOException("No customers or menu here; run generate first");
+        Zipf items = new Zipf(menu.size(), itemSkew);
+        Zipf who = new Zipf(customers.size(), customerSkew);
+
+        OrderService service = OrderService.shared();
+        service.checkout(customers.get(0), basket(r, items, menu)).join(); // open and recover before timing
+
+        int n = (int) Math.max(1, rate * seconds);
+        long[] latency = new long[n];
+        AtomicLong failed = new AtomicLong();
+        AtomicLong lastDone = new AtomicLong();
+        CompletableFuture<?>[] all = new CompletableFuture<?>[n];
+        long interval = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long due = start + i * interval;
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            int slot = i;
+            all[i] = service.checkout(customers.get(who.next(r)), basket(r, items, menu)).whenComplete((o, err) -> {
+                long now = System.nanoTime();
+                latency[slot] = now - due;
+                lastDone.accumulateAndGet(now, Math::max);
+                if (err != null) failed.incrementAndGet();
+            });
+        }
+        try {
+            CompletableFuture.allOf(all).get(5, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            // failures are counted per order above
+        }
+        // checkouts still pending after the timeout have no latency yet; they are counted, not ranked as 0 ms
+        long[] finished = new long[n];
+        int done = 0;
+        for (int i = 0; i < n; i++) {
+            if (all[i].isDone()) finished[done++] = latency[i];
+        }
+        finished = Arrays.copyOf(finished, done);
+        Arrays.sort(finished);
+        double elapsed = (lastDone.get() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "offered %.0f/s for %.1f s: %d checkouts, %d failed, %d unfinished, sustained %.0f/s%n",
+                rate, seconds, n, failed.get(), n - done, (done - failed.get()) / Math.max(1e-9, elapsed));
+        if (done > 0) {
+            System.out.printf(Locale.ROOT, "latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p999 %.2f  max %.2f%n",
+                    pct(finished, 0.5), pct(finished, 0.9), pct(finished, 0.99), pct(finished, 0.999), finished[done - 1] / 1e6);
+        }
+
+        // where the time went, from the metrics recorded along the order path
+        for (Metrics.Snapshot m : Metrics.histogramSnapshots()) {
+            if (m.count == 0) continue;
+            System.out.printf(Locale.ROOT, "  %-24s n=%-8d p50 %-10s p99 %-10s max %s%s%n", m.name, m.count,
+                    Metrics.format(m, m.percentile(0.5)), Metrics.format(m, m.percentile(0.99)),
+                    Metrics.format(m, m.max()), m.nanos ? " ms" : "");
+        }
+
+        if (opt.containsKey("analytics")) {
+            SalesRollupStore store = SalesRollupStore.of(new File("orders.csv"), new File("order_items.csv"));
+            long t0 = System.nanoTime();
+            store.rebuild();
+            long t1 = System.nanoTime();
+            int labels = 0;
+            for (String view : new String[]{"Daily", "Weekly", "Monthly"}) labels += store.buckets(view).labels.size();
+            long t2 = System.nanoTime();
+            System.out.printf(Locale.ROOT, "analytics: rollup rebuild %.0f ms, 3 views (%d labels) %.0f ms%n",
+                    (t1 - t0) / 1e6, labels, (t2 - t1) / 1e6);
+        }
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+
+    // ---- files ----
+
+    private interface LineSource {
+        String line(int i);
+    }
+
+    private static void writeLines(File f, int n, LineSource src) throws IOException {
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(f))) {
+            for (int i = 0; i < n; i++) {
+                w.write(src.line(i));
+                w.newLine();
+            }
+        }
+    }
+
+    private static void deleteTree(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) deleteTree(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,656 @@
+package billgenerator;
+
+import java.io.*;
+import java.time.*;
+import java.time.temporal.WeekFields;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- SALES ROLLUP STORE (materialized per-day totals for analytics) ----------------
+// Keeps per-day totals per customer, per item, per hour and per basket size, fed incrementally from
+// orders.csv/order_items.csv via CsvTail (one pass per appended range, each row decoded once) and
+// persisted to sales_rollups.dat together with the offsets it consumed up to. Reports are Aggregators
+// over a day range; any number of them run together in a single pass over the days (report()).
+// Weekly and monthly views are derived from the daily rollups, so switching views costs O(days); a date
+// range only visits its own days. Days map to numeric week/month keys through arithmetic and a
+// precomputed epoch-day -> month table, and a label is only formatted once per bucket.
+class SalesRollupStore {
+    private static final int MAGIC = 0x504F5352; // "POSR"
+    private static final int VERSION = 2;
+    private static final long IDLE_SAVE_MS = 30_000; // the snapshot is O(history): written once sales go quiet
+    private static final long NO_ORDER = Long.MIN_VALUE;
+    private static final Map<String, SalesRollupStore> open = new HashMap<>();
+    private static final java.util.concurrent.ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rollup-save");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // epoch day -> year * 12 + month - 1, for 1970-01-01 .. 2149-06-06 (other days go through LocalDate)
+    private static final int TABLE_DAYS = 1 << 16;
+    private static final int[] MONTH_KEY = new int[TABLE_DAYS];
+    static {
+        int day = 0;
+        for (LocalDate m = LocalDate.ofEpochDay(0); day < TABLE_DAYS; m = m.plusMonths(1)) {
+            int key = m.getYear() * 12 + m.getMonthValue() - 1;
+            for (int d = m.lengthOfMonth(); d > 0 && day < TABLE_DAYS; d--) MONTH_KEY[day++] = key;
+        }
+    }
+    private static final WeekFields WEEK = WeekFields.of(Locale.getDefault());
+
+    // per-day sums keyed by dictionary id; the maps iterate in first-appearance order, so a parallel
+    // fold merged in file order iterates exactly like a sequential one. Read by the aggregators.
+    static final class DayRollup {
+        final IntLongMap customerCents = new IntLongMap();
+        final IntLongMap itemQty = new IntLongMap();
+        final IntLongMap itemCents = new IntLongMap();
+        long orders;
+        final long[] hourOrders = new long[24];
+        final long[] hourCents = new long[24];
+        final IntLongMap basketUnits = new IntLongMap(); // units in an order -> orders
+    }
+
+    // what one byte range of a file adds to the rollups; filled by a single scan task with its own ids
+    private static final class Partial {
+        final TreeMap<LocalDate, DayRollup> days = new TreeMap<>();
+        final NameDictionary customers = new NameDictionary();
+        final NameDictionary items = new NameDictionary();
+        // rows arrive in date order, so the day is usually the previous row's
+        long lastEpochDay = Long.MIN_VALUE;
+        DayRollup lastDay;
+        boolean any;
+        // baskets: an order's rows are contiguous, but the first and last order of a range may continue
+        // in the neighbouring range, so those two stay open for merge() to join
+        long headOrder = NO_ORDER, headUnits, headDay;
+        long tailOrder = NO_ORDER, tailUnits, tailDay;
+
+        void foldOrder(CsvScanner r) {
+            // datetime,customer,total[,order_id]
+            if (r.fieldCount() < 3) return;
+            long cents = r.parseCents(2, 0);
+            long second = r.epochSecond(0);
+            DayRollup d = day(second == Long.MIN_VALUE ? r.epochDay(0) : Math.floorDiv(second, 86400));
+            d.customerCents.add(r.id(1, customers), cents);
+            d.orders++;
+            if (second != Long.MIN_VALUE) {
+                int hour = Math.floorMod(second, 86400) / 3600;
+                d.hourOrders[hour]++;
+                d.hourCents[hour] += cents;
+            }
+            any = true;
+        }
+
+        void foldItem(CsvScanner r) {
+            // datetime,item,qty,line_total[,order_id]
+            if (r.fieldCount() < 4) return;
+            DayRollup d = day(r.epochDay(0));
+            int item = r.id(1, items);
+            int qty = r.parseInt(2, 0);
+            d.itemQty.add(item, qty);
+            d.itemCents.add(item, r.parseCents(3, 0));
+            // legacy rows without an order id: the rows of one order share their datetime text
+            long order = r.fieldCount() > 4 ? r.parseLong(4, NO_ORDER) : NO_ORDER;
+            if (order == NO_ORDER) order = -1L - (r.string(0).hashCode() & 0xffffffffL);
+            basket(order, qty, lastEpochDay);
+            any = true;
+        }
+
+        private void basket(long order, long units, long epochDay) {
+            if (order == tailOrder) {
+                tailUnits += units;
+                return;
+            }
+            if (tailOrder != NO_ORDER) {
+                if (headOrder == NO_ORDER) {
+                    headOrder = tailOrder;
+                    headUnits = tailUnits;
+                    headDay = tailDay;
+                } else {
+                    day(tailDay).basketUnits.add(unitsKey(tailUnits), 1);
+                }
+            }
+            tailOrder = order;
+            tailUnits = units;
+            tailDay = epochDay;
+        }
+
+        private DayRollup day(long epochDay) {
+            if (epochDay == Long.MIN_VALUE) epochDay = LocalDate.now().toEpochDay(); // unparseable datetime
+            if (epochDay != lastEpochDay) {
+                lastEpochDay = epochDay;
+                lastDay = days.computeIfAbsent(LocalDate.ofEpochDay(epochDay), k -> new DayRollup());
+            }
+            return lastDay;
+        }
+    }
+
+    private static int unitsKey(long units) {
+        return (int) Math.max(0, Math.min(units, Integer.MAX_VALUE));
+    }
+
+    // chart input: per label (chronological) customer id -> cents, plus names for the ids
+    static final class Buckets {
+        final List<String> labels = new ArrayList<>();
+        final List<IntLongMap> cents = new ArrayList<>();
+        final IntLongMap customerTotals = new IntLongMap(); // over all labels, present customers only
+        String[] customers = new String[0];
+    }
+
+    private final File ordersFile;
+    private final File orderItemsFile;
+    private final File storeFile;
+    private final CsvTail ordersTail;
+    private final CsvTail itemsTail;
+
+    private final TreeMap<LocalDate, DayRollup> days = new TreeMap<>();
+    private final NameDictionary customers = new NameDictionary();
+    private final NameDictionary items = new NameDictionary();
+    private long[] itemQty = new long[16]; // all-time by item id, derived from days
+    // the last order of order_items.csv so far: reports count it, but more of its rows may still arrive
+    private long openOrder = NO_ORDER, openUnits, openDay;
+    private boolean dirty = false;
+    private long lastChange = 0;
+    private boolean saveScheduled = false;
+    // false until the raw files have been folded once (or a snapshot was loaded); until then range
+    // queries scan only their own bytes while the full fold runs in the background
+    private volatile boolean folded = false;
+    private final java.util.concurrent.atomic.AtomicBoolean warming = new java.util.concurrent.atomic.AtomicBoolean();
+
+    static synchronized SalesRollupStore of(File ordersFile, File orderItemsFile) {
+        String key = ordersFile.getAbsolutePath() + "|" + orderItemsFile.getAbsolutePath();
+        SalesRollupStore s = open.get(key);
+        if (s == null) {
+            s = new SalesRollupStore(ordersFile, orderItemsFile, fileFor(ordersFile));
+            open.put(key, s);
+            SalesRollupStore store = s;
+            Runtime.getRuntime().addShutdownHook(new Thread(store::saveIfDirty, "rollup-store-shutdown"));
+        }
+        return s;
+    }
+
+    static File fileFor(File ordersFile) {
+        return new File(ordersFile.getAbsoluteFile().getParentFile(), "sales_rollups.dat");
+    }
+
+    SalesRollupStore(File ordersFile, File orderItemsFile, File storeFile) {
+        this.ordersFile = ordersFile;
+        this.orderItemsFile = orderItemsFile;
+        this.storeFile = storeFile;
+        this.ordersTail = new CsvTail(ordersFile);
+        this.itemsTail = new CsvTail(orderItemsFile);
+        load();
+    }
+
+    // Fold in whatever was appended to the raw files since the last call.
+    synchronized void catchUp() {
+        ordersTail.poll(this::clearCustomers, (from, to) -> fold(ordersFile, from, to, Partial::foldOrder));
+        itemsTail.poll(this::clearItems, (from, to) -> fold(orderItemsFile, from, to, Partial::foldItem));
+        folded = true;
+        if (dirty) saveWhenIdle();
+    }
+
+    // one pending save per store; it waits until nothing was folded in for IDLE_SAVE_MS
+    private void saveWhenIdle() {
+        if (saveScheduled || storeFile == null) return;
+        saveScheduled = true;
+        saver.schedule(this::idleSave, IDLE_SAVE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void idleSave() {
+        long quiet = System.currentTimeMillis() - lastChange;
+        if (quiet < IDLE_SAVE_MS) {
+            saver.schedule(this::idleSave, IDLE_SAVE_MS - quiet, TimeUnit.MILLISECONDS);
+            return;
+        }
+        saveScheduled = false;
+        saveIfDirty();
+    }
+
+    // A store answering queries for days [fromDay, toDay] (epoch days; Long.MIN_VALUE/MAX_VALUE for open
+    // ends). Normally this store, caught up. On a first open of a long history nothing is folded yet, so a
+    // bounded range is answered from a throwaway store fed only the bytes the time indexes give for it.
+    SalesRollupStore forRange(long fromDay, long toDay) {
+        if (folded || fromDay == Long.MIN_VALUE || toDay == Long.MAX_VALUE) {
+            catchUp();
+            return this;
+        }
+        if (warming.compareAndSet(false, true)) {
+            Thread t = new Thread(this::catchUp, "rollup-warmup");
+            t.setDaemon(true);
+            t.start();
+        }
+        try {
+            SalesRollupStore range = new SalesRollupStore(ordersFile, orderItemsFile, null);
+            long[] o = TimeIndex.of(ordersFile).range(fromDay * 86400, toDay * 86400 + 86399);
+            long[] i = TimeIndex.of(orderItemsFile).range(fromDay * 86400, toDay * 86400 + 86399);
+            range.fold(ordersFile, o[0], o[1], Partial::foldOrder);
+            range.fold(orderItemsFile, i[0], i[1], Partial::foldItem);
+            Metrics.counter("analytics.range.bytes").add((o[1] - o[0]) + (i[1] - i[0]));
+            return range;
+        } catch (IOException e) {
+            Metrics.failure("SalesRollupStore", e);
+            catchUp();
+            return this;
+        }
+    }
+
+    // Throw everything away and recompute from the raw files.
+    synchronized void rebuild() {
+        days.clear();
+        Arrays.fill(itemQty, 0);
+        openOrder = NO_ORDER;
+        ordersTail.restore(0, new byte[0]);
+        itemsTail.restore(0, new byte[0]);
+        ordersTail.poll(this::clearCustomers, (from, to) -> fold(ordersFile, from, to, Partial::foldOrder));
+        itemsTail.poll(this::clearItems, (from, to) -> fold(orderItemsFile, from, to, Partial::foldItem));
+        folded = true;
+        save();
+    }
+
+    // best sellers by all-time quantity, largest first (ties: item seen first)
+    synchronized List<Map.Entry<String, Long>> topItems(int n) {
+        TopN top = new TopN(n);
+        for (int id = 0; id < items.size(); id++) {
+            if (itemQty[id] != 0) top.offer(id, itemQty[id]);
+        }
+        List<Map.Entry<String, Long>> out = new ArrayList<>();
+        for (int id : top.ranked()) out.add(new AbstractMap.SimpleImmutableEntry<>(items.name(id), itemQty[id]));
+        return out;
+    }
+
+    // best sellers by quantity within days [fromDay, toDay]
+    synchronized List<Map.Entry<String, Long>> topItems(int n, long fromDay, long toDay) {
+        if (fromDay == Long.MIN_VALUE && toDay == Long.MAX_VALUE) return topItems(n);
+        TopSellers top = new TopSellers(n);
+        report(fromDay, toDay, top);
+        return top.result;
+    }
+
+    // per-customer cents for each label of the view, labels in chronological order
+    synchronized Buckets buckets(String view) {
+        return buckets(view, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // same, over days [fromDay, toDay] only
+    synchronized Buckets buckets(String view, long fromDay, long toDay) {
+        Series series = new Series(view);
+        report(fromDay, toDay, series);
+        return series.result;
+    }
+
+    // Feeds every day of [fromDay, toDay] to all the aggregators in one pass, then lets them finish.
+    synchronized void report(long fromDay, long toDay, Aggregator... aggregators) {
+        for (Map.Entry<LocalDate, DayRollup> e : daysIn(fromDay, toDay).entrySet()) {
+            long epochDay = e.getKey().toEpochDay();
+            DayRollup d = e.getValue();
+            for (Aggregator a : aggregators) a.day(epochDay, d);
+        }
+        for (Aggregator a : aggregators) a.finish(this, fromDay, toDay);
+    }
+
+    // ---- reports ----
+
+    // One report over a day range. day() sees the days in date order; finish() runs under the store's lock.
+    abstract static class Aggregator {
+        abstract void day(long epochDay, DayRollup d);
+
+        void finish(SalesRollupStore store, long fromDay, long toDay) { }
+    }
+
+    // best sellers by quantity, largest first (ties: item seen first)
+    static final class TopSellers extends Aggregator {
+        private final int n;
+        private long[] qty = new long[16]; // by item id
+        List<Map.Entry<String, Long>> result = Collections.emptyList();
+
+        TopSellers(int n) {
+            this.n = n;
+        }
+
+        @Override void day(long epochDay, DayRollup d) {
+            for (int i = 0; i < d.itemQty.size(); i++) {
+                int id = d.itemQty.keyAt(i);
+                if (id >= qty.length) qty = Arrays.copyOf(qty, Math.max(id + 1, qty.length * 2));
+                qty[id] += d.itemQty.valueAt(i);
+            }
+        }
+
+        @Override void finish(SalesRollupStore store, long fromDay, long toDay) {
+            TopN top = new TopN(n);
+            for (int id = 0; id < qty.length; id++) {
+                if (qty[id] != 0) top.offer(id, qty[id]);
+            }
+            List<Map.Entry<String, Long>> out = new ArrayList<>();
+            for (int id : top.ranked()) out.add(new AbstractMap.SimpleImmutableEntry<>(store.items.name(id), qty[id]));
+            result = out;
+        }
+    }
+
+    // per-customer cents per bucket of the view; days arrive in order, so a bucket ends when the key changes
+    static final class Series extends Aggregator {
+        private final String view;
+        private long current = Long.MIN_VALUE;
+        private IntLongMap into;
+        final Buckets result = new Buckets();
+
+        Series(String view) {
+            this.view = view;
+        }
+
+        @Override void day(long epochDay, DayRollup d) {
+            IntLongMap day = d.customerCents;
+            if (day.isEmpty()) return;
+            long key = bucketOf(epochDay, view);
+            if (into == null || key != current) {
+                current = key;
+                into = new IntLongMap();
+                result.labels.add(bucketLabel(key, view));
+                result.cents.add(into);
+            }
+            for (int i = 0; i < day.size(); i++) {
+                into.add(day.keyAt(i), day.valueAt(i));
+                result.customerTotals.add(day.keyAt(i), day.valueAt(i));
+            }
+        }
+
+        @Override void finish(SalesRollupStore store, long fromDay, long toDay) {
+            result.customers = store.customers.names();
+        }
+    }
+
+    // orders, sales and units sold over the range
+    static final class Totals extends Aggregator {
+        long orders, cents, units, activeDays;
+
+        @Override void day(long epochDay, DayRollup d) {
+            orders += d.orders;
+            cents += d.customerCents.sum();
+            units += d.itemQty.sum();
+            if (d.orders > 0) activeDays++;
+        }
+    }
+
+    // units per order -> number of orders
+    static final class BasketSizes extends Aggregator {
+        final IntLongMap ordersByUnits = new IntLongMap();
+
+        @Override void day(long epochDay, DayRollup d) {
+            for (int i = 0; i < d.basketUnits.size(); i++) ordersByUnits.add(d.basketUnits.keyAt(i), d.basketUnits.valueAt(i));
+        }
+
+        @Override void finish(SalesRollupStore store, long fromDay, long toDay) {
+            if (store.openOrder != NO_ORDER && store.openDay >= fromDay && store.openDay <= toDay) {
+                ordersByUnits.add(unitsKey(store.openUnits), 1);
+            }
+        }
+    }
+
+    // orders and sales by hour of day (0-23)
+    static final class Hourly extends Aggregator {
+        final long[] orders = new long[24];
+        final long[] cents = new long[24];
+
+        @Override void day(long epochDay, DayRollup d) {
+            for (int h = 0; h < 24; h++) {
+                orders[h] += d.hourOrders[h];
+                cents[h] += d.hourCents[h];
+            }
+        }
+    }
+
+    private NavigableMap<LocalDate, DayRollup> daysIn(long fromDay, long toDay) {
+        NavigableMap<LocalDate, DayRollup> m = days;
+        if (fromDay != Long.MIN_VALUE) m = m.tailMap(LocalDate.ofEpochDay(fromDay), true);
+        if (toDay != Long.MAX_VALUE) m = m.headMap(LocalDate.ofEpochDay(toDay), true);
+        return m;
+    }
+
+    static String bucketKey(LocalDate day, String view) {
+        return bucketLabel(bucketOf(day.toEpochDay(), view), view);
+    }
+
+    // numeric, chronologically ordered key of the view's bucket holding epochDay:
+    // Daily the day itself, Weekly the first day of its week, Monthly year * 12 + month - 1
+    static long bucketOf(long epochDay, String view) {
+        if ("Weekly".equals(view)) {
+            int first = WEEK.getFirstDayOfWeek().getValue(); // 1 = Monday
+            return epochDay - Math.floorMod(epochDay + 3 - (first - 1), 7); // day 0 was a Thursday
+        }
+        if ("Monthly".equals(view)) {
+            if (epochDay >= 0 && epochDay < TABLE_DAYS) return MONTH_KEY[(int) epochDay];
+            LocalDate d = LocalDate.ofEpochDay(epochDay);
+            return d.getYear() * 12L + d.getMonthValue() - 1;
+        }
+        return epochDay;
+    }
+
+    // yyyy-MM-dd, yyyy-Www (locale week-based year) or yyyy-MM
+    static String bucketLabel(long key, String view) {
+        StringBuilder sb = new StringBuilder(10);
+        if ("Weekly".equals(view)) {
+            LocalDate start = LocalDate.ofEpochDay(key);
+            sb.append(start.get(WEEK.weekBasedYear())).append("-W");
+            return pad2(sb, start.get(WEEK.weekOfWeekBasedYear())).toString();
+        }
+        if ("Monthly".equals(view)) {
+            sb.append(Math.floorDiv(key, 12)).append('-');
+            return pad2(sb, Math.floorMod(key, 12) + 1).toString();
+        }
+        return LocalDate.ofEpochDay(key).toString();
+    }
+
+    private static StringBuilder pad2(StringBuilder sb, int v) {
+        if (v < 10) sb.append('0');
+        return sb.append(v);
+    }
+
+    synchronized void saveIfDirty() {
+        if (dirty && storeFile != null) save();
+    }
+
+    // large appends (a rebuild, a first run over old history) are folded range by range in parallel
+    private long fold(File f, long from, long to, CsvScanner.PartialFolder<Partial> folder) throws IOException {
+        List<Partial> parts = new ArrayList<>();
+        long end = CsvScanner.scanParallel(f, from, to, Partial::new, folder, parts);
+        for (Partial p : parts) merge(p);
+        return end;
+    }
+
+    private void merge(Partial p) {
+        if (!p.any) return;
+        int[] cust = remap(p.customers, customers);
+        int[] item = remap(p.items, items);
+        if (itemQty.length < items.size()) itemQty = Arrays.copyOf(itemQty, Math.max(items.size(), itemQty.length * 2));
+        for (Map.Entry<LocalDate, DayRollup> e : p.days.entrySet()) {
+            DayRollup from = e.getValue();
+            DayRollup into = days.computeIfAbsent(e.getKey(), k -> new DayRollup());
+            for (int i = 0; i < from.customerCents.size(); i++) {
+                into.customerCents.add(cust[from.customerCents.keyAt(i)], from.customerCents.valueAt(i));
+            }
+            for (int i = 0; i < from.itemQty.size(); i++) {
+                int id = item[from.itemQty.keyAt(i)];
+                long qty = from.itemQty.valueAt(i);
+                into.itemQty.add(id, qty);
+                into.itemCents.add(id, from.itemCents.get(from.itemQty.keyAt(i)));
+                itemQty[id] += qty;
+            }
+            into.orders += from.orders;
+            for (int h = 0; h < 24; h++) {
+                into.hourOrders[h] += from.hourOrders[h];
+                into.hourCents[h] += from.hourCents[h];
+            }
+            for (int i = 0; i < from.basketUnits.size(); i++) into.basketUnits.add(from.basketUnits.keyAt(i), from.basketUnits.valueAt(i));
+        }
+        if (p.headOrder != NO_ORDER) takeBasket(p.headOrder, p.headUnits, p.headDay);
+        if (p.tailOrder != NO_ORDER) takeBasket(p.tailOrder, p.tailUnits, p.tailDay);
+        dirty = true;
+        lastChange = System.currentTimeMillis();
+    }
+
+    // the next order fragment in file order: continues the open order or closes it
+    private void takeBasket(long order, long units, long epochDay) {
+        if (order == openOrder) {
+            openUnits += units;
+            return;
+        }
+        if (openOrder != NO_ORDER) {
+            days.computeIfAbsent(LocalDate.ofEpochDay(openDay), k -> new DayRollup()).basketUnits.add(unitsKey(openUnits), 1);
+        }
+        openOrder = order;
+        openUnits = units;
+        openDay = epochDay;
+    }
+
+    // partial id -> store id
+    private static int[] remap(NameDictionary from, NameDictionary to) {
+        int[] map = new int[from.size()];
+        for (int id = 0; id < map.length; id++) map[id] = to.id(from.name(id));
+        return map;
+    }
+
+    private void clearCustomers() {
+        for (DayRollup d : days.values()) {
+            d.customerCents.clear();
+            d.orders = 0;
+            Arrays.fill(d.hourOrders, 0);
+            Arrays.fill(d.hourCents, 0);
+        }
+        dirty = true;
+    }
+
+    private void clearItems() {
+        for (DayRollup d : days.values()) {
+            d.itemQty.clear();
+            d.itemCents.clear();
+            d.basketUnits.clear();
+        }
+        Arrays.fill(itemQty, 0);
+        openOrder = NO_ORDER;
+        dirty = true;
+    }
+
+    private void load() {
+        if (storeFile == null || !storeFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            long ordersOff = in.readLong();
+            byte[] ordersHead = readBytes(in);
+            long itemsOff = in.readLong();
+            byte[] itemsHead = readBytes(in);
+            openOrder = in.readLong();
+            openUnits = in.readLong();
+            openDay = in.readLong();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                DayRollup d = new DayRollup();
+                days.put(LocalDate.ofEpochDay(in.readLong()), d);
+                int nc = in.readInt();
+                for (int c = 0; c < nc; c++) d.customerCents.add(customers.id(in.readUTF()), in.readLong());
+                int ni = in.readInt();
+                for (int k = 0; k < ni; k++) {
+                    int id = items.id(in.readUTF());
+                    long qty = in.readLong();
+                    d.itemQty.add(id, qty);
+                    d.itemCents.add(id, in.readLong());
+                    if (itemQty.length <= id) itemQty = Arrays.copyOf(itemQty, Math.max(id + 1, itemQty.length * 2));
+                    itemQty[id] += qty;
+                }
+                d.orders = in.readLong();
+                for (int h = in.readUnsignedByte(); h > 0; h--) {
+                    int hour = in.readUnsignedByte();
+                    d.hourOrders[hour] = in.readLong();
+                    d.hourCents[hour] = in.readLong();
+                }
+                int nb = in.readInt();
+                for (int b = 0; b < nb; b++) d.basketUnits.add(in.readInt(), in.readLong());
+            }
+            ordersTail.restore(ordersOff, ordersHead);
+            itemsTail.restore(itemsOff, itemsHead);
+            folded = ordersOff > 0 || itemsOff > 0;
+        } catch (IOException e) {
+            // unreadable snapshot: start from scratch, the next catchUp rebuilds from the raw files
+            Metrics.failure("SalesRollupStore", e);
+            days.clear();
+            Arrays.fill(itemQty, 0);
+            openOrder = NO_ORDER;
+        }
+    }
+
+    private void save() {
+        // a unique name per save: two terminals may save the same file at once
+        File tmp;
+        try {
+            tmp = java.nio.file.Files.createTempFile(storeFile.getAbsoluteFile().getParentFile().toPath(), storeFile.getName(), ".tmp").toFile();
+        } catch (IOException e) {
+            Metrics.failure("SalesRollupStore", e);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(ordersTail.offset());
+            writeBytes(out, ordersTail.fingerprint());
+            out.writeLong(itemsTail.offset());
+            writeBytes(out, itemsTail.fingerprint());
+            out.writeLong(openOrder);
+            out.writeLong(openUnits);
+            out.writeLong(openDay);
+            out.writeInt(days.size());
+            for (Map.Entry<LocalDate, DayRollup> e : days.entrySet()) {
+                out.writeLong(e.getKey().toEpochDay());
+                DayRollup d = e.getValue();
+                out.writeInt(d.customerCents.size());
+                for (int i = 0; i < d.customerCents.size(); i++) {
+                    out.writeUTF(customers.name(d.customerCents.keyAt(i)));
+                    out.writeLong(d.customerCents.valueAt(i));
+                }
+                out.writeInt(d.itemQty.size());
+                for (int i = 0; i < d.itemQty.size(); i++) {
+                    int id = d.itemQty.keyAt(i);
+                    out.writeUTF(items.name(id));
+                    out.writeLong(d.itemQty.valueAt(i));
+                    out.writeLong(d.itemCents.get(id));
+                }
+                out.writeLong(d.orders);
+                int hours = 0;
+                for (int h = 0; h < 24; h++) if (d.hourOrders[h] != 0 || d.hourCents[h] != 0) hours++;
+                out.writeByte(hours);
+                for (int h = 0; h < 24; h++) {
+                    if (d.hourOrders[h] == 0 && d.hourCents[h] == 0) continue;
+                    out.writeByte(h);
+                    out.writeLong(d.hourOrders[h]);
+                    out.writeLong(d.hourCents[h]);
+                }
+                out.writeInt(d.basketUnits.size());
+                for (int i = 0; i < d.basketUnits.size(); i++) {
+                    out.writeInt(d.basketUnits.keyAt(i));
+                    out.writeLong(d.basketUnits.valueAt(i));
+                }
+            }
+        } catch (IOException e) {
+            Metrics.failure("SalesRollupStore", e);
+            tmp.delete();
+            return;
+        }
+        try {
+            java.nio.file.Files.move(tmp.toPath(), storeFile.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            Metrics.failure("SalesRollupStore", e);
+            tmp.delete();
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return b;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeShort(b.length);
+        out.write(b);
+    }
+}
@@ -0,0 +1,428 @@
+package billgenerator;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+//---------------- Simple Line Chart (no external libs) ----------------
+// Data is copied into primitive arrays once per setSeries call and pre-downsampled into levels of
+// detail (each level half the points of the previous one, picked by Largest-Triangle-Three-Buckets).
+// The chart is drawn into a cached image that is only redrawn when the data, the size or the visible
+// range changes; a draw touches O(plot width) points whatever the number of buckets.
+// Mouse wheel zooms around the pointer, dragging pans, double-click shows everything again.
+class SimpleLineChartPanel extends JPanel {
+    private static final int MIN_LEVEL_POINTS = 256;
+    private static final Color GRID = new Color(230, 230, 230);
+    private static final Color SINGLE = new Color(30, 144, 255);
+    private static final BasicStroke LINE = new BasicStroke(2f);
+    private static final BasicStroke TOTAL_LINE = new BasicStroke(3f);
+    private static final BasicStroke AXIS = new BasicStroke(1f);
+
+    private static final class Series {
+        final String name;
+        final Color color;
+        final BasicStroke stroke;
+        final List<int[]> levelIndex = new ArrayList<>();   // level -> bucket index of each kept point
+        final List<double[]> levelValue = new ArrayList<>(); // level -> value of each kept point
+
+        Series(String name, Color color, BasicStroke stroke, double[] values) {
+            this.name = name;
+            this.color = color;
+            this.stroke = stroke;
+            int[] idx = new int[values.length];
+            for (int i = 0; i < idx.length; i++) idx[i] = i;
+            levelIndex.add(idx);
+            levelValue.add(values);
+            while (idx.length > MIN_LEVEL_POINTS) {
+                int[] keep = lttb(idx, values, 0, idx.length, idx.length / 2);
+                int[] nextIdx = new int[keep.length];
+                double[] nextVal = new double[keep.length];
+                for (int k = 0; k < keep.length; k++) {
+                    nextIdx[k] = idx[keep[k]];
+                    nextVal[k] = values[keep[k]];
+                }
+                idx = nextIdx;
+                values = nextVal;
+                levelIndex.add(idx);
+                levelValue.add(values);
+            }
+        }
+    }
+
+    private String[] labels = new String[0];
+    private Series[] series = new Series[0];
+    private boolean multi = false;
+    private String seriesName = "";
+    private String currencyPrefix = "";
+    private final List<Color> palette;
+
+    // visible range in bucket indices; cached rendering of exactly that range at exactly this size
+    private double viewStart = 0, viewEnd = 0;
+    private BufferedImage cache;
+    private boolean dirty = true;
+    private int dragX = -1;
+
+    public SimpleLineChartPanel() {
+        setPreferredSize(new Dimension(600, 400));
+        setBackground(Color.WHITE);
+        setToolTipText("Scroll to zoom, drag to pan, double-click to show all");
+        palette = defaultPalette();
+
+        addMouseWheelListener(e -> zoom(e.getX(), e.getWheelRotation() < 0 ? 0.8 : 1.25));
+        MouseAdapter drag = new MouseAdapter() {
+            @Override public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+            }
+
+            @Override public void mouseReleased(MouseEvent e) {
+                dragX = -1;
+            }
+
+            @Override public void mouseDragged(MouseEvent e) {
+                if (dragX < 0) return;
+                pan(dragX - e.getX());
+                dragX = e.getX();
+            }
+
+            @Override public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) resetView();
+            }
+        };
+        addMouseListener(drag);
+        addMouseMotionListener(drag);
+    }
+
+    // old API (kept)
+    public void setSeries(String name, List<String> labels, List<Double> values, String currencyPrefix) {
+        this.multi = false;
+        this.series = new Series[]{new Series(name == null ? "" : name, SINGLE, LINE, toArray(values, 0))};
+        setData(name, labels, currencyPrefix);
+    }
+
+    // new API (multi-series per customer + TOTAL)
+    public void setMultiSeries(String name, List<String> labels, LinkedHashMap<String, List<Double>> seriesMap, String currencyPrefix) {
+        this.multi = true;
+        int n = labels == null ? 0 : labels.size();
+        List<Series> list = new ArrayList<>();
+        if (seriesMap != null) {
+            int si = 0;
+            for (Map.Entry<String, List<Double>> e : seriesMap.entrySet()) {
+                boolean total = e.getKey().equals("TOTAL");
+                Color c = total ? Color.BLACK : palette.get(si % palette.size());
+                list.add(new Series(e.getKey(), c, total ? TOTAL_LINE : LINE, toArray(e.getValue(), n)));
+                si++;
+            }
+        }
+        this.series = list.toArray(new Series[0]);
+        setData(name, labels, currencyPrefix);
+    }
+
+    private void setData(String name, List<String> labels, String currencyPrefix) {
+        this.seriesName = name == null ? "" : name;
+        this.labels = labels == null ? new String[0] : labels.toArray(new String[0]);
+        this.currencyPrefix = currencyPrefix == null ? "" : currencyPrefix;
+        resetView();
+    }
+
+    // missing or null values count as 0; length n (or the list's own length when n is 0)
+    private static double[] toArray(List<Double> values, int n) {
+        if (values == null) return new double[n];
+        double[] out = new double[n > 0 ? n : values.size()];
+        for (int i = 0; i < out.length && i < values.size(); i++) {
+            Double v = values.get(i);
+            out[i] = v == null ? 0 : v;
+        }
+        return out;
+    }
+
+    private int points() {
+        if (multi) return labels.length;
+        return series.length == 0 ? 0 : series[0].levelIndex.get(0).length;
+    }
+
+    private void resetView() {
+        viewStart = 0;
+        viewEnd = Math.max(0, points() - 1);
+        invalidateCache();
+    }
+
+    private void invalidateCache() {
+        dirty = true;
+        repaint();
+    }
+
+    private void zoom(int mouseX, double factor) {
+        int n = points();
+        if (n < 3) return;
+        int x0 = 70, x1 = getWidth() - 30;
+        double at = viewStart + (viewEnd - viewStart) * Math.min(1, Math.max(0, (mouseX - x0) / (double) Math.max(1, x1 - x0)));
+        double span = Math.min(n - 1, Math.max(2, (viewEnd - viewStart) * factor));
+        double start = at - (at - viewStart) * span / (viewEnd - viewStart);
+        setView(start, span);
+    }
+
+    private void pan(int dxPixels) {
+        double span = viewEnd - viewStart;
+        if (span <= 0) return;
+        double perPixel = span / Math.max(1, getWidth() - 100);
+        setView(viewStart + dxPixels * perPixel, span);
+    }
+
+    private void setView(double start, double span) {
+        int last = Math.max(0, points() - 1);
+        start = Math.max(0, Math.min(start, last - span));
+        if (start == viewStart && start + span == viewEnd) return;
+        viewStart = start;
+        viewEnd = start + span;
+        invalidateCache();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g0) {
+        long start = System.nanoTime();
+        super.paintComponent(g0);
+        int w = getWidth(), h = getHeight();
+        if (w <= 0 || h <= 0) return;
+        if (dirty || cache == null || cache.getWidth() != w || cache.getHeight() != h) {
+            if (cache == null || cache.getWidth() != w || cache.getHeight() != h) {
+                cache = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D g = cache.createGraphics();
+            try {
+                render(g, w, h);
+            } finally {
+                g.dispose();
+            }
+            dirty = false;
+            Metrics.CHART_RENDER.recordSince(start);
+        }
+        g0.drawImage(cache, 0, 0, null);
+        Metrics.CHART_PAINT.recordSince(start);
+    }
+
+    private void render(Graphics2D g, int w, int h) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, w, h);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Font base = getFont();
+
+        int padLeft = 70;
+        int padRight = 30;
+        int padTop = 50;   // extra for legend
+        int padBottom = 80;
+
+        // Title
+        g.setFont(base.deriveFont(Font.BOLD, 14f));
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(seriesName, padLeft, padTop - 30);
+
+        // Axes
+        int x0 = padLeft;
+        int y0 = h - padBottom;
+        int x1 = w - padRight;
+        int y1 = padTop;
+
+        g.setStroke(AXIS);
+        g.setColor(Color.GRAY);
+        g.drawLine(x0, y0, x1, y0); // X axis
+        g.drawLine(x0, y0, x0, y1); // Y axis
+
+        int points = points();
+        if (series.length == 0 || points == 0) {
+            g.setColor(Color.DARK_GRAY);
+            g.drawString("No data", x0 + 10, y0 - 10);
+            return;
+        }
+
+        int plotWidth = Math.max(1, x1 - x0);
+        int plotHeight = y0 - y1;
+        double span = Math.max(1, viewEnd - viewStart);
+
+        // pick each series' points for the visible range: at most ~plotWidth of them
+        int[][] xs = new int[series.length][];
+        double[][] vs = new double[series.length][];
+        double max = 1.0;
+        for (int s = 0; s < series.length; s++) {
+            Series sr = series[s];
+            int level = 0;
+            int from = 0, to = 0;
+            for (; level < sr.levelIndex.size(); level++) {
+                int[] idx = sr.levelIndex.get(level);
+                from = lowerBound(idx, (int) Math.floor(viewStart));
+                to = lowerBound(idx, (int) Math.ceil(viewEnd) + 1);
+                if (to - from <= 4 * plotWidth || level == sr.levelIndex.size() - 1) break;
+            }
+            // one neighbour on each side so the lines run to the plot edges
+            from = Math.max(0, from - 1);
+            to = Math.min(sr.levelIndex.get(level).length, to + 1);
+            int[] idx = sr.levelIndex.get(level);
+            double[] val = sr.levelValue.get(level);
+            int[] keep = to - from > plotWidth ? lttb(idx, val, from, to, plotWidth) : range(from, to);
+            xs[s] = new int[keep.length];
+            vs[s] = new double[keep.length];
+            for (int k = 0; k < keep.length; k++) {
+                xs[s][k] = idx[keep[k]];
+                vs[s][k] = val[keep[k]];
+                max = Math.max(max, val[keep[k]]);
+            }
+        }
+
+        // Gridlines + Y labels (5)
+        g.setFont(base.deriveFont(11f));
+        for (int i = 0; i <= 5; i++) {
+            int y = y0 - (i * plotHeight / 5);
+            g.setColor(GRID);
+            g.drawLine(x0, y, x1, y);
+            double v = (max * i / 5.0);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(currencyPrefix + String.format(Locale.US, "%,.0f", v), 5, y + 4);
+        }
+
+        // X labels + vertical guide lines, about 10 over the visible range
+        int first = (int) Math.ceil(viewStart), last = (int) Math.floor(viewEnd);
+        int step = Math.max(1, (last - first + 1) / 10);
+        for (int i = first; i <= last && i < labels.length; i += step) {
+            int x = x0 + (int) (plotWidth * ((i - viewStart) / span));
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawLine(x, y0, x, y1);
+            g.setColor(Color.DARK_GRAY);
+            g.drawLine(x, y0, x, y0 + 4); // tick
+            String label = labels[i];
+            String shortLabel = label.length() > 10 ? label.substring(0, 10) + "…" : label;
+            drawRotate(g, shortLabel, x - 10, y0 + 22, -45);
+        }
+
+        // Draw lines (clipped to the plot so zoomed-in neighbours do not spill over the axes)
+        Shape clip = g.getClip();
+        g.clipRect(x0, y1 - 4, plotWidth + 1, plotHeight + 8);
+        for (int s = 0; s < series.length; s++) {
+            g.setColor(series[s].color);
+            g.setStroke(series[s].stroke);
+            boolean dots = xs[s].length * 8 <= plotWidth;
+            int prevX = 0, prevY = 0;
+            for (int k = 0; k < xs[s].length; k++) {
+                int x = x0 + (int) (plotWidth * ((xs[s][k] - viewStart) / span));
+                int y = y0 - (int) ((vs[s][k] / max) * plotHeight);
+                if (k > 0) g.drawLine(prevX, prevY, x, y);
+                if (dots) g.fillOval(x - 3, y - 3, 6, 6);
+                prevX = x;
+                prevY = y;
+            }
+        }
+        g.setClip(clip);
+
+        // Legend
+        if (multi) drawLegend(g, x0, y1 - 10);
+    }
+
+    // Largest-Triangle-Three-Buckets: keeps `threshold` of the points [from, to) (x = idx, y = val),
+    // always the first and last, and from every bucket the point spanning the largest triangle with
+    // the previously kept point and the next bucket's average. Returns positions into idx/val.
+    static int[] lttb(int[] idx, double[] val, int from, int to, int threshold) {
+        int n = to - from;
+        if (threshold >= n || threshold < 3) return range(from, to);
+        int[] out = new int[threshold];
+        int o = 0;
+        out[o++] = from;
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = from;
+        for (int b = 0; b < threshold - 2; b++) {
+            int nextStart = from + (int) Math.floor((b + 1) * every) + 1;
+            int nextEnd = Math.min(from + (int) Math.floor((b + 2) * every) + 1, to);
+            double avgX = 0, avgY = 0;
+            int avgLen = Math.max(1, nextEnd - nextStart);
+            for (int k = nextStart; k < nextEnd; k++) {
+                avgX += idx[k];
+                avgY += val[k];
+            }
+            avgX /= avgLen;
+            avgY /= avgLen;
+            if (nextEnd <= nextStart) { // last bucket: the average is the final point
+                avgX = idx[to - 1];
+                avgY = val[to - 1];
+            }
+
+            int start = from + (int) Math.floor(b * every) + 1;
+            int end = from + (int) Math.floor((b + 1) * every) + 1;
+            double ax = idx[a], ay = val[a];
+            double best = -1;
+            int pick = start;
+            for (int k = start; k < end; k++) {
+                double area = Math.abs((ax - avgX) * (val[k] - ay) - (ax - idx[k]) * (avgY - ay));
+                if (area > best) {
+                    best = area;
+                    pick = k;
+                }
+            }
+            out[o++] = pick;
+            a = pick;
+        }
+        out[o] = to - 1;
+        return out;
+    }
+
+    private static int[] range(int from, int to) {
+        int[] r = new int[Math.max(0, to - from)];
+        for (int i = 0; i < r.length; i++) r[i] = from + i;
+        return r;
+    }
+
+    // first position whose value is >= key
+    private static int lowerBound(int[] a, int key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void drawLegend(Graphics2D g, int xLeft, int yTop) {
+        int x = xLeft;
+        int y = yTop;
+        int box = 10;
+        int gap = 8;
+        int colGap = 20;
+
+        for (Series s : series) {
+            g.setColor(s.color);
+            g.fillRect(x, y, box, box);
+            g.setColor(Color.DARK_GRAY);
+            g.drawRect(x, y, box, box);
+            g.drawString(s.name, x + box + 6, y + box - 1);
+            x += (box + 6 + g.getFontMetrics().stringWidth(s.name) + colGap);
+            // wrap if reaching right edge
+            if (x > getWidth() - 150) {
+                x = xLeft;
+                y += box + gap;
+            }
+        }
+    }
+
+    private List<Color> defaultPalette() {
+        return Arrays.asList(
+                new Color(33, 150, 243),  // blue
+                new Color(244, 67, 54),   // red
+                new Color(76, 175, 80),   // green
+                new Color(255, 152, 0),   // orange
+                new Color(156, 39, 176),  // purple
+                new Color(0, 188, 212),   // cyan
+                new Color(121, 85, 72),   // brown
+                new Color(63, 81, 181),   // indigo
+                new Color(205, 220, 57),  // lime
+                new Color(0, 150, 136)    // teal
+        );
+    }
+
+    private void drawRotate(Graphics2D g2, String text, int x, int y, int angle) {
+        g2.translate(x, y);
+        g2.rotate(Math.toRadians(angle));
+        g2.drawString(text, 0, 0);
+        g2.rotate(-Math.toRadians(angle));
+        g2.translate(-x, -y);
+    }
+}
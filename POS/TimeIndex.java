@@ -0,0 +1,169 @@
+package billgenerator;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// ---------------- TIME INDEX (sparse datetime -> byte offset over an append-only csv) ----------------
+// orders.csv and order_items.csv are appended in commit order, so their datetimes only grow (up to small
+// steps back). Every STRIDE bytes the index probes the first row starting there and keeps its offset with
+// the largest datetime seen so far; a date range then maps to a byte range by binary search.
+// <name>.tidx layout: int magic, int version, long bytes covered, short+bytes head fingerprint,
+// long next probe position, int entries, then per entry long offset, long max epoch second.
+class TimeIndex {
+    private static final int MAGIC = 0x504F5354; // "POST"
+    private static final int VERSION = 1;
+    private static final long STRIDE = 64L << 10;
+    // rows may be out of order by up to this much (checkouts committed out of order, a DST step back)
+    private static final long SLACK_SECONDS = 2 * 3600;
+    private static final Map<String, TimeIndex> open = new HashMap<>();
+
+    private final File csv;
+    private final File indexFile;
+    private final CsvTail tail;
+    private long[] offsets = new long[64];
+    private long[] maxSeconds = new long[64];
+    private int size = 0;
+    private long next = 0; // where the next probe starts
+    private boolean dirty = false;
+
+    static synchronized TimeIndex of(File csv) {
+        return open.computeIfAbsent(csv.getAbsolutePath(), k -> new TimeIndex(csv, fileFor(csv)));
+    }
+
+    // <name>.tidx next to <name>.csv
+    static File fileFor(File csv) {
+        File dir = csv.getAbsoluteFile().getParentFile();
+        String name = csv.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(dir, (dot > 0 ? name.substring(0, dot) : name) + ".tidx");
+    }
+
+    TimeIndex(File csv, File indexFile) {
+        this.csv = csv;
+        this.indexFile = indexFile;
+        this.tail = new CsvTail(csv);
+        load();
+    }
+
+    // Probe whatever was appended since the last call (starts over if the file was truncated/replaced).
+    synchronized void catchUp() {
+        tail.poll(this::clear, (from, to) -> probe(to));
+        if (dirty) save();
+    }
+
+    // [start, end) of the file holding every row dated within [fromSecond, toSecond] (epoch seconds, as
+    // CsvScanner.epochSecond reads them). Conservative: it may also hold rows just outside the range.
+    synchronized long[] range(long fromSecond, long toSecond) {
+        catchUp();
+        int i = firstAtLeast(Math.max(fromSecond, Long.MIN_VALUE + SLACK_SECONDS) - SLACK_SECONDS);
+        int j = firstAtLeast(Math.min(toSecond, Long.MAX_VALUE - SLACK_SECONDS - 1) + SLACK_SECONDS + 1);
+        long start = i == 0 ? 0 : offsets[i - 1];
+        long end = j < size ? offsets[j] : tail.offset();
+        return new long[]{start, Math.max(start, end)};
+    }
+
+    // first entry whose running max is >= second, or size
+    private int firstAtLeast(long second) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxSeconds[mid] < second) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private long probe(long to) throws IOException {
+        long[] second = new long[1];
+        try (FileChannel ch = FileChannel.open(csv.toPath(), StandardOpenOption.READ)) {
+            while (next < to) {
+                second[0] = Long.MIN_VALUE;
+                long row = CsvScanner.probe(ch, next, to, r -> second[0] = r.epochSecond(0));
+                if (row < 0) break; // the rest of the stride is still being written
+                if (second[0] != Long.MIN_VALUE) add(row, second[0]);
+                next = row + STRIDE;
+            }
+        }
+        return to;
+    }
+
+    private void add(long offset, long second) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            maxSeconds = Arrays.copyOf(maxSeconds, size * 2);
+        }
+        offsets[size] = offset;
+        maxSeconds[size] = size == 0 ? second : Math.max(second, maxSeconds[size - 1]);
+        size++;
+        dirty = true;
+    }
+
+    private void clear() {
+        size = 0;
+        next = 0;
+        dirty = true;
+    }
+
+    private void load() {
+        if (!indexFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            long covered = in.readLong();
+            byte[] head = new byte[in.readUnsignedShort()];
+            in.readFully(head);
+            next = in.readLong();
+            int n = in.readInt();
+            offsets = new long[Math.max(64, n)];
+            maxSeconds = new long[offsets.length];
+            for (int k = 0; k < n; k++) {
+                offsets[k] = in.readLong();
+                maxSeconds[k] = in.readLong();
+            }
+            size = n;
+            tail.restore(covered, head);
+        } catch (IOException e) {
+            // unreadable: probe the csv again from the start
+            Metrics.failure("TimeIndex", e);
+            clear();
+        }
+    }
+
+    private void save() {
+        // a unique name per save: two terminals may save the same file at once
+        File tmp;
+        try {
+            tmp = java.nio.file.Files.createTempFile(indexFile.getAbsoluteFile().getParentFile().toPath(), indexFile.getName(), ".tmp").toFile();
+        } catch (IOException e) {
+            Metrics.failure("TimeIndex", e);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(tail.offset());
+            byte[] head = tail.fingerprint();
+            out.writeShort(head.length);
+            out.write(head);
+            out.writeLong(next);
+            out.writeInt(size);
+            for (int k = 0; k < size; k++) {
+                out.writeLong(offsets[k]);
+                out.writeLong(maxSeconds[k]);
+            }
+        } catch (IOException e) {
+            Metrics.failure("TimeIndex", e);
+            tmp.delete();
+            return;
+        }
+        try {
+            java.nio.file.Files.move(tmp.toPath(), indexFile.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            Metrics.failure("TimeIndex", e);
+            tmp.delete();
+        }
+    }
+}
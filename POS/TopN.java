@@ -0,0 +1,76 @@
+package billgenerator;
+
+// keeps the n best (id, value) pairs: larger value first, equal values by smaller id
+final class TopN {
+    private final int[] ids;
+    private final long[] values;
+    private int size;
+
+    TopN(int n) {
+        ids = new int[n];
+        values = new long[n];
+    }
+
+    void offer(int id, long value) {
+        if (size < ids.length) {
+            ids[size] = id;
+            values[size] = value;
+            up(size++);
+        } else if (size > 0 && better(id, value, ids[0], values[0])) {
+            ids[0] = id;
+            values[0] = value;
+            down(0);
+        }
+    }
+
+    // ids, best first
+    int[] ranked() {
+        int[] out = new int[size];
+        long[] v = new long[size];
+        for (int i = 0; i < size; i++) {
+            int k = i;
+            while (k > 0 && better(ids[i], values[i], out[k - 1], v[k - 1])) {
+                out[k] = out[k - 1];
+                v[k] = v[k - 1];
+                k--;
+            }
+            out[k] = ids[i];
+            v[k] = values[i];
+        }
+        return out;
+    }
+
+    private static boolean better(int id, long value, int otherId, long otherValue) {
+        return value != otherValue ? value > otherValue : id < otherId;
+    }
+
+    // min-heap on "better": the root is the weakest pair kept
+    private void up(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!better(ids[parent], values[parent], ids[i], values[i])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void down(int i) {
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, worst = i;
+            if (l < size && better(ids[worst], values[worst], ids[l], values[l])) worst = l;
+            if (r < size && better(ids[worst], values[worst], ids[r], values[r])) worst = r;
+            if (worst == i) return;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        long v = values[a];
+        values[a] = values[b];
+        values[b] = v;
+    }
+}
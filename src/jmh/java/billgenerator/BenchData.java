@@ -0,0 +1,76 @@
+package billgenerator;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// ---------------- BENCH DATA (generated datasets shared by the benchmarks) ----------------
+// Datasets are written once per size to <pos.bench.dir>/<size>/orders.csv + order_items.csv and reused by
+// later runs. Sizes go up to 10^7 orders; the default parameters stop at 10^5.
+final class BenchData {
+    static final String[] CUSTOMERS = new String[200];
+    static final String[] ITEMS = new String[60];
+    static final long[] PRICES = new long[ITEMS.length];
+
+    static {
+        for (int i = 0; i < CUSTOMERS.length; i++) CUSTOMERS[i] = "customer" + i;
+        Random r = new Random(7);
+        for (int i = 0; i < ITEMS.length; i++) {
+            ITEMS[i] = "Item " + i;
+            PRICES[i] = 2500 + r.nextInt(40_000) / 50 * 50;
+        }
+    }
+
+    private BenchData() {
+    }
+
+    static File dir(String name) {
+        return new File(System.getProperty("pos.bench.dir", "bench-data"), name);
+    }
+
+    static List<OrderRecord.Line> lines(Random r) {
+        int n = 1 + r.nextInt(4);
+        List<OrderRecord.Line> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int item = r.nextInt(ITEMS.length);
+            lines.add(new OrderRecord.Line(ITEMS[item], 1 + r.nextInt(3), PRICES[item]));
+        }
+        return lines;
+    }
+
+    // n orders over two years in time order, 1-4 lines each, written like OrderFilesProjection does
+    static File generate(long n, long seed) throws IOException {
+        File dir = dir(String.valueOf(n));
+        File orders = new File(dir, "orders.csv");
+        File items = new File(dir, "order_items.csv");
+        File done = new File(dir, ".complete");
+        if (done.exists() && orders.exists() && items.exists()) return dir;
+        dir.mkdirs();
+        Random r = new Random(seed);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        long spanSeconds = 2L * 365 * 24 * 3600;
+        StringBuilder row = new StringBuilder(128);
+        try (BufferedWriter ow = new BufferedWriter(new FileWriter(orders), 1 << 16);
+             BufferedWriter iw = new BufferedWriter(new FileWriter(items), 1 << 16)) {
+            for (long id = 1; id <= n; id++) {
+                String at = start.plusSeconds(spanSeconds * (id - 1) / Math.max(1, n)).toString();
+                String customer = CUSTOMERS[r.nextInt(CUSTOMERS.length)];
+                List<OrderRecord.Line> lines = lines(r);
+                long total = 0;
+                for (OrderRecord.Line l : lines) {
+                    row.setLength(0);
+                    row.append(at).append(',').append(l.item).append(',').append(l.qty).append(',');
+                    Money.append(row, l.lineCents()).append(',').append(id).append('\n');
+                    iw.append(row);
+                    total += l.lineCents();
+                }
+                row.setLength(0);
+                row.append(at).append(',').append(customer).append(',');
+                Money.append(row, total).append(',').append(id).append('\n');
+                ow.append(row);
+            }
+        }
+        done.createNewFile();
+        return dir;
+    }
+}
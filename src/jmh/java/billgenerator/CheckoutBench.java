@@ -0,0 +1,63 @@
+package billgenerator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- CHECKOUT BENCHMARKS (the path of CashierPanel.finishOrder) ----------------
+// Validate, journal (fsync per policy), text projections. Sequential waits for each order; pipelined keeps a
+// batch in flight so the journal can group fsyncs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckoutBench {
+    private static final int BATCH = 1000;
+
+    @Param({"order"})
+    public String fsync;
+
+    private OrderJournal journal;
+    private OrderService service;
+    private final Random r = new Random(1);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File dir = BenchData.dir("checkout");
+        dir.mkdirs();
+        for (File f : Optional.ofNullable(dir.listFiles()).orElse(new File[0])) f.delete();
+        OrderJournal j = new OrderJournal(new File(dir, "orders.journal"), OrderJournal.FsyncPolicy.parse(fsync),
+                new OrderFilesProjection(new File(dir, "sales.txt"), new File(dir, "transactions.txt"),
+                        new File(dir, "orders.csv"), new File(dir, "order_items.csv")));
+        journal = j;
+        AccountStore accounts = new AccountStore(new File(dir, "accounts.log"));
+        for (String c : BenchData.CUSTOMERS) accounts.put(new AccountStore.Account(c, "bench", "", "", ""));
+        service = new OrderService((hi, lo, order) -> j.append(order), accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Benchmark
+    public OrderRecord sequential() {
+        return service.checkout(customer(), BenchData.lines(r)).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public OrderRecord pipelined() {
+        List<CompletableFuture<OrderRecord>> pending = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) pending.add(service.checkout(customer(), BenchData.lines(r)));
+        OrderRecord last = null;
+        for (CompletableFuture<OrderRecord> f : pending) last = f.join();
+        return last;
+    }
+
+    private String customer() {
+        return BenchData.CUSTOMERS[r.nextInt(BenchData.CUSTOMERS.length)];
+    }
+}
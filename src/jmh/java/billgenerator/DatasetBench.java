@@ -0,0 +1,98 @@
+package billgenerator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- DATASET BENCHMARKS (scans, rollups and the sales chart against generated orders) ----------------
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatasetBench {
+    @Param({"1000", "10000", "100000"})
+    public long orders;
+
+    private File ordersFile;
+    private SalesRollupStore store;
+    private SalesRollupStore.Buckets daily;
+    private LinkedHashMap<String, List<Double>> series;
+    private SimpleLineChartPanel chart;
+    private BufferedImage img;
+
+    @State(Scope.Thread)
+    public static class View {
+        @Param({"Daily", "Weekly", "Monthly"})
+        public String view;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        File data = BenchData.generate(orders, 42);
+        ordersFile = new File(data, "orders.csv");
+        store = new SalesRollupStore(ordersFile, new File(data, "order_items.csv"), new File(data, "bench_rollups.dat"));
+        store.rebuild();
+
+        // chart: series for the first customers over daily labels, drawn to an off-screen image
+        daily = store.buckets("Daily");
+        series = new LinkedHashMap<>();
+        for (int c = 0; c < Math.min(6, daily.customers.length); c++) {
+            List<Double> vals = new ArrayList<>(daily.labels.size());
+            for (IntLongMap m : daily.cents) vals.add(m.get(c) / 100.0);
+            series.put(daily.customers[c], vals);
+        }
+        chart = new SimpleLineChartPanel();
+        chart.setSize(900, 500);
+        chart.setMultiSeries("Sales", daily.labels, series, "₱");
+        img = new BufferedImage(900, 500, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public long csvScanOrders() throws IOException {
+        long[] cents = {0};
+        CsvScanner.scan(ordersFile, r -> cents[0] += r.parseCents(2, 0));
+        return cents[0];
+    }
+
+    // every row of both files
+    @Benchmark
+    public SalesRollupStore rollupsRebuild() {
+        store.rebuild();
+        return store;
+    }
+
+    @Benchmark
+    public List<?> topSellers() {
+        return store.topItems(10);
+    }
+
+    @Benchmark
+    public SalesRollupStore.Buckets buckets(View v) {
+        return store.buckets(v.view);
+    }
+
+    @Benchmark
+    public BufferedImage chartSetDataPaint() {
+        chart.setMultiSeries("Sales", daily.labels, series, "₱");
+        return paint();
+    }
+
+    @Benchmark
+    public BufferedImage chartPaintCached() {
+        return paint();
+    }
+
+    private BufferedImage paint() {
+        Graphics2D g = img.createGraphics();
+        try {
+            chart.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+}
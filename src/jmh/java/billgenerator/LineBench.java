@@ -0,0 +1,61 @@
+package billgenerator;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// ---------------- LINE BENCHMARKS (per-row work that does not depend on the dataset size) ----------------
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LineBench {
+    private static final int BAG_SCANS = 12;
+
+    private final String line = "2026-03-14T12:30:45.123456789,customer42,1234.50,987654";
+    private final LocalDate[] days = new LocalDate[730];
+    private final StringBuilder sb = new StringBuilder(32);
+    private long cents;
+
+    @State(Scope.Thread)
+    public static class View {
+        @Param({"Daily", "Weekly", "Monthly"})
+        public String view;
+    }
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < days.length; i++) days[i] = LocalDate.of(2025, 1, 1).plusDays(i);
+    }
+
+    @Benchmark
+    public String[] csvSplit() {
+        return CsvScanner.split(line);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(730)
+    public void bucketKey(View v, Blackhole bh) {
+        for (LocalDate d : days) bh.consume(SalesRollupStore.bucketKey(d, v.view));
+    }
+
+    @Benchmark
+    public long moneyParseAppend() {
+        sb.setLength(0);
+        Money.append(sb, cents += 37);
+        return Money.parse(sb);
+    }
+
+    // a cashier ringing up a few items, most of them more than once
+    @Benchmark
+    @OperationsPerInvocation(BAG_SCANS)
+    public BagModel addToBag() {
+        BagModel bag = new BagModel();
+        for (int i = 0; i < BAG_SCANS; i++) {
+            int item = i * 7 % 5;
+            bag.add(BenchData.ITEMS[item], BenchData.PRICES[item]);
+        }
+        return bag;
+    }
+}